@@ -0,0 +1,84 @@
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.time.zone.ZoneOffsetTransition;
+
+import java.util.function.Consumer;
+
+/**
+  * A daily marker on one time zone, such as "market open in Tokyo" at 09:00.
+  * When its local time comes around, the clocks of its zone are highlighted
+  * and show its label, and its callback (if any) runs on the event dispatch
+  * thread.
+  * Alarms are scheduled by a TimingWheel.
+  */
+public class Alarm {
+	public final int zone;
+	public final LocalTime time;
+	public final String label;
+
+	final Consumer<Alarm> callback;
+
+	// The next time this alarm goes off, and the next offset change in its
+	// zone after that (or next itself, if DST moved it). Until then, each
+	// day's alarm is just 86400 seconds after the one before.
+	long next;
+	long validUntil;
+
+	// The next alarm in the same slot of the timing wheel
+	Alarm nextInSlot;
+	boolean cancelled;
+
+	/**
+	  * Creates an alarm
+	  * @param zone the catalog index of the zone, see ClockModel.zoneIndex()
+	  * @param time the local time of day the alarm goes off
+	  * @param label a short description, shown on the clocks when the alarm goes off
+	  * @param callback called when the alarm goes off, or null
+	  */
+	public Alarm(int zone, LocalTime time, String label, Consumer<Alarm> callback) {
+		this.zone = zone;
+		this.time = time;
+		this.label = label;
+		this.callback = callback;
+	}
+
+	/**
+	  * Sets next to the first time this alarm goes off after the given instant
+	  * @param epochSecond the instant, in seconds since 1970-01-01T00:00Z
+	  */
+	void scheduleAfter(long epochSecond) {
+		ZonedDateTime after = Instant.ofEpochSecond(epochSecond).atZone( ClockModel.zoneId(zone) );
+
+		// Times that DST skips are moved later, just like ZonedDateTime does
+		ZonedDateTime at = after.with(time);
+		if ( !at.isAfter(after) )
+			at = after.plusDays(1).with(time);
+
+		setNext( at.toEpochSecond() );
+
+		// A time moved by a DST gap is only right for that day, so the
+		// next day is found from the rules again
+		if ( !at.toLocalTime().equals(time) )
+			validUntil = next;
+	}
+
+	/**
+	  * Moves next on to the following day. This only needs the time zone
+	  * rules when the zone's offset changes in between.
+	  */
+	void scheduleNextDay() {
+		if (next + 86400 < validUntil)
+			next += 86400;
+		else
+			scheduleAfter(next);
+	}
+
+	private void setNext(long epochSecond) {
+		next = epochSecond;
+
+		ZoneOffsetTransition transition = ClockModel.rules(zone)
+			.nextTransition( Instant.ofEpochSecond(epochSecond) );
+		validUntil = transition == null ? Long.MAX_VALUE : transition.toEpochSecond();
+	}
+}
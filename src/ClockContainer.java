@@ -2,76 +2,96 @@ import javax.swing.JPanel;
 import javax.swing.JLabel;
 import javax.swing.JTextArea;
 import javax.swing.JButton;
-import javax.swing.SwingConstants;
-import javax.swing.Box;
 
-import java.awt.Font;
+import java.awt.BorderLayout;
+import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.Font;
 import java.awt.GridBagLayout;
 import java.awt.GridBagConstraints;
+import java.awt.Rectangle;
 
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
+import javax.swing.SwingUtilities;
 
-import java.awt.event.ComponentAdapter;
-import java.awt.event.ComponentEvent;
+import java.time.format.DateTimeFormatter;
 
 /**
-  * A panel that contains a clock, timezone and time labels, and a remove button
+  * A panel that contains a clock, timezone and time labels, a remove button,
+  * and next to it the label of an alarm that just went off.
+  * A wall has only one of these, which it uses as a renderer: it is set up
+  * for one clock at a time and stamped onto the wall, the same way a JTable
+  * paints its cells. So it holds no time of its own.
   */
 public class ClockContainer extends JPanel {
-	public final GraphicsPanel clock;
-	public final ZoneId timezone;
+	// The wall sets up the clock for each cell; the rest is only set here
+	final GraphicsPanel clock;
+
+	private final JLabel label_time;
+	private final JTextArea label_timezone;
+	private final JButton btn_remove;
+	private final JLabel label_alarm;
 
-	public final JLabel label_time;
-	public final JTextArea label_timezone;
-	public final JButton btn_remove;
+	// Holds the remove button and the alarm label on one line
+	private final JPanel buttonRow;
 
 	static final Font bold = new Font("Helvetica", Font.BOLD, 18);
 	static final Font plain = new Font("Helvetica", Font.PLAIN, 18);
 
-	// Used to get the timezone and time easier.
-	// Formats to: "(full time zone name)::hour:minute:second AM/PM"
-	static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("zzzz::hh:mm:ss a");
+	// Formats to: "hour:minute:second AM/PM"
+	static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("hh:mm:ss a");
+
+	// How long a clock stays highlighted after one of its alarms goes off
+	static final int HIGHLIGHT_MILLIS = 5000;
+	static final Color highlightColor = new Color(255, 230, 120);
+
+	private final Color normalColor;
+
+	// What the labels currently show, so they are only changed when needed
+	private String shownName, shownTime, shownAlarm;
+
+	// The cell size the clock was last fitted to
+	private int fittedWidth = -1, fittedHeight = -1;
 
 	/**
-	  * Creates a new container with the given clock and time zone
+	  * Creates a new container with the given clock
 	  */
-	public ClockContainer(GraphicsPanel clock, ZoneId timezone) {
+	public ClockContainer(GraphicsPanel clock) {
 		super();
 
 		this.clock = clock;
-		this.timezone = timezone;
-
-		// When this component changes size, resize the clock to fit
-		addComponentListener(new ComponentAdapter() {
-			@Override
-			public void componentResized(ComponentEvent e) {
-				int width = getWidth() - 35;
-				int height = getHeight() - 35;
-				int size = Math.min(width, height);
-
-				clock.changeSize(size);
-				revalidate();
-			}
-		});
+		normalColor = getBackground();
 
 		// The time zone is a text area instead of a label
-		// because labels do not support word wrapping
+		// because labels do not support word wrapping.
+		// It always keeps room for two lines, so every cell has the same layout.
 		label_timezone = new JTextArea();
 		label_timezone.setFont(bold);
 		label_timezone.setEditable(false);
 		label_timezone.setLineWrap(true);
 		label_timezone.setWrapStyleWord(true);
 		label_timezone.setOpaque(false);
+		label_timezone.setRows(2);
 
-		label_time = new JLabel();
+		// Starts with a space, so the label takes up its line from the start
+		label_time = new JLabel(" ");
 		label_time.setFont(plain);
 
 		btn_remove = new JButton("Remove");
 		btn_remove.setFont(plain);
 
+		// Empty unless an alarm just went off. It takes whatever room the
+		// button leaves, so its text never changes the layout of the cell;
+		// a long label is cut short.
+		label_alarm = new JLabel();
+		label_alarm.setFont(bold);
+		label_alarm.setMinimumSize( new Dimension(0, 0) );
+		label_alarm.setPreferredSize( new Dimension(0, 0) );
+
+		buttonRow = new JPanel( new BorderLayout(10, 0) );
+		buttonRow.setOpaque(false);
+		buttonRow.add(btn_remove, BorderLayout.WEST);
+		buttonRow.add(label_alarm, BorderLayout.CENTER);
+
 		// ---------- LAYOUT ----------
 
 		// GridBagLayout is an alternative grid based layout manager
@@ -102,36 +122,87 @@ public class ClockContainer extends JPanel {
 		c.gridy = 2;
 		add(label_time, c);
 
-		c.fill = GridBagConstraints.NONE;
-		c.anchor = GridBagConstraints.LINE_START;
 		c.gridx = 0;
 		c.gridy = 3;
-		add(btn_remove, c);
+		add(buttonRow, c);
 
 		updateUI();
 	}
 
 	/**
-	  * Updates this container's clock to display the correct time
-	  * According to the given time zone and time
-	  * @param main the primary time zone and time to adjust for
+	  * Sets the size of the clock so that it, the labels and the button
+	  * all fit in a cell of the given size
+	  * @param width the width of the cell
+	  * @param height the height of the cell
 	  */
-	public void updateTime(ZonedDateTime main) {
-		ZonedDateTime time = main.withZoneSameInstant(timezone);
+	public void fit(int width, int height) {
+		if (width == fittedWidth && height == fittedHeight)
+			return;
 
-		clock.hour = time.getHour();
-		clock.minute = time.getMinute();
-		clock.second = time.getSecond();
+		int textHeight = getPreferredSize().height - clock.getPreferredSize().height;
+		clock.changeSize( Math.max(1, Math.min(width - 10, height - textHeight)) );
 
-		if (clock.hour == 0)
-			clock.hour = 12;
-		else if (clock.hour > 12)
-			clock.hour %= 12;
+		fittedWidth = width;
+		fittedHeight = height;
 
-		clock.repaint();
+		// Lays out here, since a renderer is never shown and can't validate
+		setSize(width, height);
+		doLayout();
+		buttonRow.doLayout();
+	}
 
-		String[] format = formatter.format(time).split("::");
-		label_timezone.setText(format[0]);
-		label_time.setText(format[1]);
+	/**
+	  * Returns the bounds of the remove button within this container
+	  */
+	public Rectangle removeButtonBounds() {
+		return SwingUtilities.convertRectangle(buttonRow, btn_remove.getBounds(), this);
+	}
+
+	/**
+	  * Sets this container up to display one clock of a model
+	  * @param model the model that holds the clock
+	  * @param slot the slot of the clock in the model
+	  * @param zoneName the full name of the clock's time zone
+	  * @param time the text for the time label.
+	  *        Clocks that show the same local time share one string.
+	  * @param alarm the label of an alarm on the clock's time zone that just
+	  *        went off (which highlights the clock), or null if none did
+	  */
+	public void update(ClockModel model, int slot, String zoneName, String time, String alarm) {
+		clock.showTime(model, slot);
+		setBackground(alarm != null ? highlightColor : normalColor);
+
+		// Each alarm's label stays the same string while it is shown
+		if (alarm != shownAlarm) {
+			label_alarm.setText(alarm);
+			shownAlarm = alarm;
+		}
+
+		// Neighbouring clocks often share their strings, so this usually
+		// only compares references
+		boolean nameChanged = !zoneName.equals(shownName);
+		boolean timeChanged = !time.equals(shownTime);
+		if (!nameChanged && !timeChanged)
+			return;
+
+		WallEvents.LabelUpdate event = new WallEvents.LabelUpdate();
+		event.begin();
+
+		if (nameChanged) {
+			label_timezone.setText(zoneName);
+			shownName = zoneName;
+		}
+
+		if (timeChanged) {
+			label_time.setText(time);
+			shownTime = time;
+		}
+
+		// Only names too long for two lines change the layout
+		if (nameChanged && label_timezone.getPreferredSize().height != label_timezone.getHeight())
+			doLayout();
+
+		event.zoneName = nameChanged;
+		event.commit();
 	}
 }
@@ -0,0 +1,253 @@
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+import java.util.Arrays;
+
+/**
+  * The time shown by every clock on a wall, kept apart from the
+  * components that display it.
+  *
+  * Each clock is a "slot" made of a few primitives: the index of its zone in
+  * the sorted tzdb catalog, its current UTC offset, and the range of time
+  * in which that offset is valid. Offsets are only looked up again when the
+  * time leaves that range (usually a daylight saving change), so updating
+  * the model once per second does not allocate anything.
+  *
+  * A slot takes 24 bytes, plus the unused capacity of the arrays.
+  */
+public class ClockModel {
+	// Every tzdb zone ID, sorted. A slot's zone is an index into this array.
+	static final String[] ZONES = ZoneId.getAvailableZoneIds()
+		.stream()
+		.sorted()
+		.toArray(String[]::new);
+
+	// Looked up the first time each zone is used
+	private static final ZoneId[] ids = new ZoneId[ZONES.length];
+	private static final ZoneRules[] rules = new ZoneRules[ZONES.length];
+
+	// Formats to the full time zone name, such as "Central European Summer Time"
+	static final DateTimeFormatter zoneFormatter = DateTimeFormatter.ofPattern("zzzz");
+
+	private int size;
+	private int[] zones;
+	private int[] offsets;
+
+	// The cached offset is valid from validFrom (inclusive) to validUntil (exclusive)
+	private long[] validFrom, validUntil;
+
+	private long epochSecond;
+
+	/**
+	  * Creates an empty model
+	  */
+	public ClockModel() {
+		this(16);
+	}
+
+	private ClockModel(int capacity) {
+		zones = new int[capacity];
+		offsets = new int[capacity];
+		validFrom = new long[capacity];
+		validUntil = new long[capacity];
+	}
+
+	/**
+	  * Returns the catalog index of a time zone ID
+	  * @param id the time zone ID, such as "Europe/Dublin"
+	  * @return the index of the zone in ZONES
+	  * @throws DateTimeException if the ID is not a tzdb zone
+	  */
+	public static int zoneIndex(String id) {
+		int zone = Arrays.binarySearch(ZONES, id);
+		if (zone < 0)
+			throw new DateTimeException("Unknown time zone: " + id);
+
+		return zone;
+	}
+
+	/**
+	  * Returns the ZoneId of a catalog index
+	  * @param zone the index of the zone in ZONES
+	  * @return the ZoneId of the zone
+	  */
+	public static ZoneId zoneId(int zone) {
+		if (ids[zone] == null)
+			ids[zone] = ZoneId.of(ZONES[zone]);
+
+		return ids[zone];
+	}
+
+	/**
+	  * Returns the rules of a catalog index
+	  * @param zone the index of the zone in ZONES
+	  * @return the rules of the zone
+	  */
+	static ZoneRules rules(int zone) {
+		if (rules[zone] == null)
+			rules[zone] = zoneId(zone).getRules();
+
+		return rules[zone];
+	}
+
+	/**
+	  * Returns the number of clocks in this model
+	  * @return the number of clocks in this model
+	  */
+	public int size() {
+		return size;
+	}
+
+	/**
+	  * Adds a clock to the end of this model
+	  * @param zone the catalog index of the clock's zone
+	  * @return the slot of the new clock
+	  */
+	public int add(int zone) {
+		if (size == zones.length) {
+			int capacity = size * 2;
+			zones = Arrays.copyOf(zones, capacity);
+			offsets = Arrays.copyOf(offsets, capacity);
+			validFrom = Arrays.copyOf(validFrom, capacity);
+			validUntil = Arrays.copyOf(validUntil, capacity);
+		}
+
+		zones[size] = zone;
+		lookup(size);
+
+		return size++;
+	}
+
+	/**
+	  * Removes a clock. Every clock after it moves down one slot.
+	  * @param slot the slot of the clock to remove
+	  */
+	public void remove(int slot) {
+		int moved = size - slot - 1;
+		System.arraycopy(zones, slot + 1, zones, slot, moved);
+		System.arraycopy(offsets, slot + 1, offsets, slot, moved);
+		System.arraycopy(validFrom, slot + 1, validFrom, slot, moved);
+		System.arraycopy(validUntil, slot + 1, validUntil, slot, moved);
+		size--;
+	}
+
+	/**
+	  * Sets the instant shown by every clock
+	  * @param epochSecond the instant, in seconds since 1970-01-01T00:00Z
+	  */
+	public void update(long epochSecond) {
+		this.epochSecond = epochSecond;
+
+		for (int i = 0; i < size; i++)
+			if (epochSecond < validFrom[i] || epochSecond >= validUntil[i])
+				lookup(i);
+	}
+
+	/**
+	  * Looks up the offset of one slot at the current instant
+	  */
+	private void lookup(int slot) {
+		ZoneRules zr = rules(zones[slot]);
+
+		// Starting one nanosecond late makes a transition at exactly
+		// this instant count as the previous one, not the next one
+		Instant instant = Instant.ofEpochSecond(epochSecond, 1);
+		offsets[slot] = zr.getOffset(instant).getTotalSeconds();
+
+		ZoneOffsetTransition previous = zr.previousTransition(instant);
+		ZoneOffsetTransition next = zr.nextTransition(instant);
+
+		validFrom[slot] = previous == null ? Long.MIN_VALUE : previous.toEpochSecond();
+		validUntil[slot] = next == null ? Long.MAX_VALUE : next.toEpochSecond();
+	}
+
+	/**
+	  * Sets the instant shown by every clock, without looking up any offsets.
+	  * Used along with setOffset() when the offsets come from somewhere else.
+	  * @param epochSecond the instant, in seconds since 1970-01-01T00:00Z
+	  */
+	void setTime(long epochSecond) {
+		this.epochSecond = epochSecond;
+	}
+
+	/**
+	  * Sets the UTC offset of a slot, which was computed somewhere else.
+	  * The offset is looked up again on the next call to update().
+	  * @param slot the slot to change
+	  * @param offset the UTC offset, in seconds
+	  */
+	void setOffset(int slot, int offset) {
+		offsets[slot] = offset;
+		validFrom[slot] = Long.MAX_VALUE;
+		validUntil[slot] = Long.MIN_VALUE;
+	}
+
+	/**
+	  * Returns the instant shown by every clock
+	  * @return the instant, in seconds since 1970-01-01T00:00Z
+	  */
+	public long time() {
+		return epochSecond;
+	}
+
+	/**
+	  * Returns the catalog index of a slot's zone
+	  */
+	public int zone(int slot) {
+		return zones[slot];
+	}
+
+	/**
+	  * Returns the current UTC offset of a slot, in seconds
+	  */
+	public int offset(int slot) {
+		return offsets[slot];
+	}
+
+	/**
+	  * Returns the local time of a slot as seconds since midnight
+	  * @return the local time, from 0 to 86399
+	  */
+	public int secondOfDay(int slot) {
+		return (int) Math.floorMod(epochSecond + offsets[slot], 86400L);
+	}
+
+	/**
+	  * Returns the hour shown on a slot's clock face
+	  * @return the hour, from 1 to 12
+	  */
+	public int hour(int slot) {
+		int hour = secondOfDay(slot) / 3600 % 12;
+		return hour == 0 ? 12 : hour;
+	}
+
+	/**
+	  * Returns the minute of a slot's local time
+	  */
+	public int minute(int slot) {
+		return secondOfDay(slot) / 60 % 60;
+	}
+
+	/**
+	  * Returns the second of a slot's local time
+	  */
+	public int second(int slot) {
+		return secondOfDay(slot) % 60;
+	}
+
+	/**
+	  * Returns the full name of a slot's zone at the current instant.
+	  * The name depends on the offset, such as "Central European Summer Time",
+	  * so callers can keep it until offset(slot) changes.
+	  * @return the full time zone name
+	  */
+	public String zoneName(int slot) {
+		Instant instant = Instant.ofEpochSecond(epochSecond);
+		return zoneFormatter.format( ZonedDateTime.ofInstant(instant, zoneId(zones[slot])) );
+	}
+}
@@ -1,25 +1,105 @@
+import java.time.Instant;
+import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 
-import java.util.Map;
-import java.util.HashMap;
-import java.util.List;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.function.Consumer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
+import javax.swing.CellRendererPane;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.ToolTipManager;
 
-import java.awt.GridLayout;
-import java.awt.FlowLayout;
 import java.awt.Dimension;
 import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 
 /**
   * A container for virtual analog clocks on a wall.
+  *
+  * The wall has no component per clock. It lays its clocks out in a grid
+  * and paints the ones in view through a single ClockContainer, so a clock
+  * costs no more than its slot in the model.
+  *
+  * The clocks, the main time and the alarms can be changed from any thread.
+  * Each change of the clocks publishes a new, never-modified array of zones,
+  * which readers such as the kiosk can use without locking. The components
+  * and the alarms follow on the event dispatch thread, in one batch per
+  * update. Everything else (such as setLive(), lead() and follow()) must be
+  * called on the event dispatch thread.
   */
 public class ClockWall extends JPanel {
-	private ZonedDateTime mainTime;
-	private Map<String, ClockContainer> containers;
+	private volatile ZonedDateTime mainTime;
+
+	// The zones on the wall, as catalog indexes in display order.
+	// Writers replace the whole array (copy on write).
+	private final AtomicReference<int[]> zones = new AtomicReference<>(new int[0]);
+
+	// A main time set from another thread, waiting to be shown
+	private final AtomicReference<ZonedDateTime> pendingTime = new AtomicReference<>();
+	private final AtomicBoolean flushQueued = new AtomicBoolean();
+
+	// Alarms added or removed from any thread, waiting to go on the wheel
+	private final Queue<Alarm> addedAlarms = new ConcurrentLinkedQueue<>();
+	private final Queue<Alarm> removedAlarms = new ConcurrentLinkedQueue<>();
+
+	// The time of each clock. Only used on the event dispatch thread.
+	private ClockModel model;
+
+	// Paints every clock in turn, and the pane it is stamped through
+	private final ClockContainer renderer;
+	private final CellRendererPane rendererPane;
+
+	// The grid of clocks, laid out like a GridLayout
+	static final int COLUMNS = 4;
+	static final int GAP = 5;
+	private final Dimension cellSize;
+
+	// Live mode: the clocks keep running from liveStart, and tick once a second
+	private Timer liveTimer;
+	private ZonedDateTime liveStart;
+	private long liveStartNanos;
+	private long lastTick;
+	private long missedSeconds;
+
+	// When several processes share one host, the leader writes each live
+	// tick to this file, and followers show the ticks it contains
+	private TickFile leaderFile;
+
+	// Clocks with the same UTC offset show the same local time, so each
+	// tick they are grouped by offset. A group formats its time label once,
+	// and (if it has more than one clock) shares one image of its face.
+	private int groupCount;
+	private int[] groupOffsets = new int[16];
+	private int[] groupSizes = new int[16];
+	private String[] groupTimes = new String[16];
+
+	// The group of each slot, as of the last tick
+	private int[] slotGroups = new int[16];
+
+	// The full name of each catalog zone, and the offset it was named at
+	private final String[] zoneNames = new String[ClockModel.ZONES.length];
+	private final int[] namedOffsets = new int[ClockModel.ZONES.length];
+
+	// Daily markers on time zones, and the label of the alarm that just went
+	// off in each catalog zone (null if none did). The clocks of those zones
+	// are highlighted until their own highlight ends (in nanoTime millis).
+	// The timer fires when the first of them ends.
+	private TimingWheel alarms;
+	private final String[] alarmLabels = new String[ClockModel.ZONES.length];
+	private final long[] highlightEnds = new long[ClockModel.ZONES.length];
+	private Timer highlightTimer;
 
 	/**
 	  * Initializes the wall and all of its components
@@ -27,69 +107,684 @@ public class ClockWall extends JPanel {
 	public ClockWall() {
 		super();
 
-		// The containers for each time zone clock
-		containers = new HashMap<>();
+		model = new ClockModel();
+
+		GraphicsPanel clock = new GraphicsPanel();
+		clock.changeSize(200);
+		renderer = new ClockContainer(clock);
+		cellSize = renderer.getPreferredSize();
+
+		rendererPane = new CellRendererPane();
+		add(rendererPane);
+
+		alarms = new TimingWheel();
+
+		highlightTimer = new Timer(ClockContainer.HIGHLIGHT_MILLIS, evt -> expireHighlights());
+		highlightTimer.setRepeats(false);
+
+		// Shows the whole label of an alarm, in case the clock cuts it short
+		ToolTipManager.sharedInstance().registerComponent(this);
 
 		setBackground( Color.LIGHT_GRAY );
-		setLayout( new GridLayout(0, 4, 5, 5) );
+		setLayout(null);
+
+		// When the user clicks a clock's "remove" button, remove that clock
+		addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				int slot = slotAt( e.getX(), e.getY() );
+				if (slot >= 0 && onRemoveButton(slot, e.getX(), e.getY()))
+					removeClicked(slot);
+			}
+		});
 	}
 
 	/**
 	  * Sets the "main" time zone and updates clocks accordingly.
+	  * This can be called from any thread; see changed().
 	  * @param mainTime the "main" time zone
 	  */
 	public void setMainTime(ZonedDateTime mainTime) {
+		if ( !SwingUtilities.isEventDispatchThread() ) {
+			pendingTime.set(mainTime);
+			changed();
+			return;
+		}
+
 		this.mainTime = mainTime;
 
+		// In live mode, keep running from the new time
+		if (liveTimer != null) {
+			liveStart = mainTime;
+			liveStartNanos = System.nanoTime();
+			lastTick = mainTime.toEpochSecond();
+		}
+
 		updateClocks();
 	}
 
+	/**
+	  * Returns the "main" time zone and time
+	  * @return the main time, or null if none has been set
+	  */
+	public ZonedDateTime getMainTime() {
+		return mainTime;
+	}
+
+	/**
+	  * Turns live mode on or off. In live mode, the clocks keep running
+	  * from the main time (or the current time, if none is set),
+	  * ticking at the start of every second.
+	  * @param live true to turn live mode on, false to turn it off
+	  */
+	public void setLive(boolean live) {
+		if (live == (liveTimer != null))
+			return;
+
+		if (!live) {
+			liveTimer.stop();
+			liveTimer = null;
+			return;
+		}
+
+		liveTimer = new Timer(1000, evt -> tick());
+		liveTimer.setRepeats(false);
+		setMainTime(mainTime != null ? mainTime : ZonedDateTime.now());
+		scheduleTick();
+	}
+
+	/**
+	  * Returns the time the clocks show in live mode
+	  */
+	private ZonedDateTime liveTime() {
+		return liveStart.plusNanos(System.nanoTime() - liveStartNanos);
+	}
+
+	/**
+	  * Starts the live timer so it fires just after the next second starts
+	  */
+	private void scheduleTick() {
+		int delay = (1_000_000_000 - liveTime().getNano()) / 1_000_000 + 1;
+		liveTimer.setInitialDelay(delay);
+		liveTimer.restart();
+	}
+
+	/**
+	  * Moves the clocks to the current live time.
+	  * If the event dispatch thread was too busy to tick every second,
+	  * the seconds that were never shown are counted as missed.
+	  */
+	private void tick() {
+		if (liveTimer == null)
+			return;
+
+		mainTime = liveTime();
+
+		long second = mainTime.toEpochSecond();
+		if (second > lastTick + 1)
+			missedSeconds += second - lastTick - 1;
+		lastTick = second;
+
+		updateClocks();
+		scheduleTick();
+	}
+
+	/**
+	  * Makes this wall the leader of a group of processes on the same host.
+	  * The wall runs in live mode and writes every time it shows (each tick,
+	  * and any other main time, such as playback) to the given file.
+	  * @param file the tick file shared by every process in the group
+	  */
+	public void lead(TickFile file) {
+		leaderFile = file;
+		setLive(true);
+	}
+
+	/**
+	  * Makes this wall a follower of another process on the same host.
+	  * Instead of ticking on its own, the wall shows every tick the leader
+	  * writes to the given file, using the offsets the leader computed.
+	  * @param file the tick file shared by every process in the group
+	  */
+	public void follow(TickFile file) {
+		setLive(false);
+
+		// Checks for a new tick every millisecond. Only the version is read
+		// here; the tick itself is read on the event dispatch thread.
+		Thread poller = new Thread(() -> {
+			long seen = 0;
+			while (true) {
+				long version = file.version();
+				if (version != seen && (version & 1) == 0) {
+					seen = version;
+					SwingUtilities.invokeLater(() -> showTick(file));
+				}
+
+				LockSupport.parkNanos(1_000_000);
+			}
+		}, "Tick file follower");
+
+		poller.setDaemon(true);
+		poller.start();
+	}
+
+	/**
+	  * Shows the latest tick from a leader's tick file
+	  */
+	private void showTick(TickFile file) {
+		WallEvents.Tick event = new WallEvents.Tick();
+		event.begin();
+
+		long epochSecond = file.read(model);
+		if (epochSecond == Long.MIN_VALUE)
+			return;
+
+		ZoneId zone = mainTime != null ? mainTime.getZone() : ZoneId.systemDefault();
+		mainTime = Instant.ofEpochSecond(epochSecond).atZone(zone);
+		updateViews();
+		advanceAlarms(epochSecond);
+
+		event.clocks = model.size();
+		event.epochSecond = epochSecond;
+		event.commit();
+	}
+
+	/**
+	  * Returns how many seconds live mode skipped because a tick came late
+	  * @return the number of missed seconds
+	  */
+	long getMissedSeconds() {
+		return missedSeconds;
+	}
+
 	/**
 	  * Adds a new clock with the given time zone to the wall, unless
 	  * the clock already exists on the wall.
+	  * This can be called from any thread; see changed().
 	  * @param id the ID of the new time zone
 	  * @return true if the number of clocks changes, false otherwise
 	  */
 	public boolean addTimeZone(String id) {
-		if ( containers.containsKey(id) )
-			return false;
+		int zone = ClockModel.zoneIndex(id);
 
-		ZoneId tz = ZoneId.of(id);
-		GraphicsPanel clock = new GraphicsPanel();
-		clock.changeSize(200);
+		int[] current, next;
+		do {
+			current = zones.get();
+			for (int z : current)
+				if (z == zone)
+					return false;
+
+			next = Arrays.copyOf(current, current.length + 1);
+			next[current.length] = zone;
+		} while ( !zones.compareAndSet(current, next) );
+
+		changed();
+		return true;
+	}
+
+	/**
+	  * Adds new clocks with the given time zones to the wall, even if the
+	  * wall already has clocks with those time zones.
+	  * This can be called from any thread; see changed().
+	  * @param added the catalog indexes of the time zones
+	  */
+	void addClocks(int... added) {
+		int[] current, next;
+		do {
+			current = zones.get();
+			next = Arrays.copyOf(current, current.length + added.length);
+			System.arraycopy(added, 0, next, current.length, added.length);
+		} while ( !zones.compareAndSet(current, next) );
+
+		changed();
+	}
+
+	/**
+	  * Removes a clock from the wall.
+	  * This can be called from any thread; see changed().
+	  * @param index the position of the clock, or -1 to remove the first
+	  *        clock with the given zone
+	  * @param zone the catalog index of the clock's time zone
+	  * @return true if the number of clocks changes, false otherwise
+	  */
+	boolean removeClock(int index, int zone) {
+		int[] current, next;
+		do {
+			current = zones.get();
+
+			// The clock may have moved if another thread changed the wall
+			int i = index;
+			if (i < 0 || i >= current.length || current[i] != zone) {
+				i = 0;
+				while (i < current.length && current[i] != zone)
+					i++;
+
+				if (i == current.length)
+					return false;
+			}
+
+			next = new int[current.length - 1];
+			System.arraycopy(current, 0, next, 0, i);
+			System.arraycopy(current, i + 1, next, i, next.length - i);
+		} while ( !zones.compareAndSet(current, next) );
+
+		changed();
+		return true;
+	}
+
+	/**
+	  * Removes the first clock with the given time zone from the wall.
+	  * This can be called from any thread; see changed().
+	  * @param id the ID of the time zone
+	  * @return true if the number of clocks changes, false otherwise
+	  */
+	public boolean removeTimeZone(String id) {
+		return removeClock( -1, ClockModel.zoneIndex(id) );
+	}
+
+	/**
+	  * Replaces every clock on the wall with clocks for the given zones.
+	  * The components are rebuilt in one pass.
+	  * This can be called from any thread; see changed().
+	  * @param replacement the catalog indexes of the new clocks' time zones
+	  */
+	public void setZones(int[] replacement) {
+		zones.set( replacement.clone() );
+		changed();
+	}
+
+	/**
+	  * Returns the time zones of the clocks on this wall, in display order,
+	  * as catalog indexes (see ClockModel.ZONES). The array is a snapshot
+	  * that is never changed, so any thread can read it without locking.
+	  * It is the wall's own array and must not be modified, which is why
+	  * only classes of this package can get it.
+	  * @return the catalog indexes of the clocks on this wall
+	  */
+	int[] getZones() {
+		return zones.get();
+	}
+
+	/**
+	  * Brings the components up to date after the zones or the main time
+	  * changed. On the event dispatch thread this happens right away.
+	  * Changes from other threads are batched: however many arrive,
+	  * only one update is queued until it has run.
+	  */
+	private void changed() {
+		if ( SwingUtilities.isEventDispatchThread() )
+			flush();
+		else if ( flushQueued.compareAndSet(false, true) )
+			SwingUtilities.invokeLater(this::flush);
+	}
+
+	/**
+	  * Applies the latest zones and main time to the components
+	  */
+	private void flush() {
+		flushQueued.set(false);
 
-		ClockContainer cc = new ClockContainer(clock, tz);
-		containers.put(id, cc);
+		for (Alarm alarm; (alarm = addedAlarms.poll()) != null; )
+			alarms.add(alarm);
+		for (Alarm alarm; (alarm = removedAlarms.poll()) != null; )
+			alarms.remove(alarm);
 
-		// When the user clicks "remove", remove this clock
-		cc.btn_remove.addActionListener(evt -> {
-			remove(cc);
+		boolean clocksChanged = syncViews( zones.get() );
+		if (clocksChanged) {
+			updateViews();
 			revalidate();
-			updateUI();
+		}
+
+		ZonedDateTime time = pendingTime.getAndSet(null);
+		if (time != null)
+			setMainTime(time);
+		else if (clocksChanged)
+			updateClocks();
+	}
+
+	/**
+	  * Adds and removes model slots until they match the
+	  * given zones. Zones are usually only added at the end or removed,
+	  * so this takes one pass.
+	  * @param snapshot the zones to show
+	  * @return true if anything changed
+	  */
+	private boolean syncViews(int[] snapshot) {
+		boolean changed = false;
+
+		for (int i = 0; i < snapshot.length; i++) {
+			while (i < model.size() && model.zone(i) != snapshot[i]) {
+				model.remove(i);
+				changed = true;
+			}
+
+			if (i == model.size()) {
+				model.add(snapshot[i]);
+				changed = true;
+			}
+		}
+
+		while (model.size() > snapshot.length) {
+			model.remove(model.size() - 1);
+			changed = true;
+		}
+
+		return changed;
+	}
 
-			containers.remove(id);
+	/**
+	  * Adds a daily alarm to a time zone, such as "market open" at 09:00 in
+	  * Asia/Tokyo. When it goes off, the clocks of that zone are highlighted
+	  * and show the label.
+	  * This can be called from any thread; see changed().
+	  * @param id the ID of the time zone
+	  * @param time the local time of day the alarm goes off
+	  * @param label a short description, shown on the clocks when the alarm goes off
+	  * @param callback called when the alarm goes off, or null
+	  * @return the new alarm
+	  */
+	public Alarm addAlarm(String id, LocalTime time, String label, Consumer<Alarm> callback) {
+		Alarm alarm = new Alarm(ClockModel.zoneIndex(id), time, label, callback);
+		addedAlarms.add(alarm);
+		changed();
+		return alarm;
+	}
+
+	/**
+	  * Removes an alarm from this wall.
+	  * This can be called from any thread; see changed().
+	  * @param alarm the alarm to remove
+	  */
+	public void removeAlarm(Alarm alarm) {
+		removedAlarms.add(alarm);
+		changed();
+	}
 
-			// Get the main window
-			MainWindow mw = (MainWindow) SwingUtilities.getAncestorOfClass​(
-				MainWindow.class, this);
+	/**
+	  * Moves the alarms to the given tick, and highlights
+	  * the clocks of every zone whose alarm went off
+	  */
+	private void advanceAlarms(long epochSecond) {
+		if (alarms.size() == 0)
+			return;
+
+		alarms.advanceTo(epochSecond, alarm -> {
+			alarmLabels[alarm.zone] = alarm.label == null ? "" : alarm.label;
+			highlightEnds[alarm.zone] = System.nanoTime() / 1_000_000 + ClockContainer.HIGHLIGHT_MILLIS;
+
+			// A running timer is already set for an earlier end
+			if ( !highlightTimer.isRunning() ) {
+				highlightTimer.setInitialDelay(ClockContainer.HIGHLIGHT_MILLIS);
+				highlightTimer.start();
+			}
+
+			if (alarm.callback != null)
+				alarm.callback.accept(alarm);
+		});
+	}
+
+	/**
+	  * Clears the highlights that have ended, and sets the timer
+	  * for the next one to end
+	  */
+	private void expireHighlights() {
+		long now = System.nanoTime() / 1_000_000;
+		long next = Long.MAX_VALUE;
+
+		for (int zone = 0; zone < alarmLabels.length; zone++) {
+			if (alarmLabels[zone] == null)
+				continue;
+
+			if (highlightEnds[zone] <= now)
+				alarmLabels[zone] = null;
+			else
+				next = Math.min(next, highlightEnds[zone]);
+		}
+
+		repaint();
+
+		if (next != Long.MAX_VALUE) {
+			highlightTimer.setInitialDelay( (int) (next - now) );
+			highlightTimer.start();
+		}
+	}
+
+	/**
+	  * Lays out the clocks on this wall
+	  */
+	@Override
+	public void doLayout() {
+		WallEvents.Layout event = new WallEvents.Layout();
+		event.begin();
+
+		super.doLayout();
+
+		event.clocks = model.size();
+		event.commit();
+	}
+
+	/**
+	  * Returns the size that shows every clock at its normal size,
+	  * in rows of COLUMNS clocks
+	  */
+	@Override
+	public Dimension getPreferredSize() {
+		if ( isPreferredSizeSet() )
+			return super.getPreferredSize();
+
+		int rows = (model.size() + COLUMNS - 1) / COLUMNS;
+		return new Dimension(
+			COLUMNS * cellSize.width + (COLUMNS - 1) * GAP,
+			Math.max(0, rows * cellSize.height + (rows - 1) * GAP)
+		);
+	}
+
+	/**
+	  * Returns the area of a clock on the wall. Like a GridLayout,
+	  * the cells share out the wall's whole size.
+	  * @param slot the slot of the clock
+	  * @return the area of the clock's cell
+	  */
+	private Rectangle cellBounds(int slot) {
+		int rows = Math.max(1, (model.size() + COLUMNS - 1) / COLUMNS);
+		int width = (getWidth() - (COLUMNS - 1) * GAP) / COLUMNS;
+		int height = (getHeight() - (rows - 1) * GAP) / rows;
+
+		return new Rectangle(
+			(slot % COLUMNS) * (width + GAP),
+			(slot / COLUMNS) * (height + GAP),
+			width,
+			height
+		);
+	}
+
+	/**
+	  * Returns the slot of the clock at a point on the wall
+	  * @return the slot, or -1 if there is no clock there
+	  */
+	private int slotAt(int x, int y) {
+		if (model.size() == 0)
+			return -1;
 
-			// Pack and update the main window to see the clock removed
+		Rectangle cell = cellBounds(0);
+		int col = x / (cell.width + GAP);
+		int row = y / (cell.height + GAP);
+		int slot = row * COLUMNS + col;
+
+		if (col >= COLUMNS || slot >= model.size() || !cellBounds(slot).contains(x, y))
+			return -1;
+
+		return slot;
+	}
+
+	/**
+	  * Returns true if a point on the wall is on a clock's "remove" button
+	  */
+	private boolean onRemoveButton(int slot, int x, int y) {
+		Rectangle cell = cellBounds(slot);
+		prepareRenderer(slot, cell);
+
+		return renderer.removeButtonBounds().contains(x - cell.x, y - cell.y);
+	}
+
+	/**
+	  * Returns the label of the alarm that just went off on the clock under
+	  * the mouse, or null if there is none
+	  */
+	@Override
+	public String getToolTipText(MouseEvent e) {
+		int slot = slotAt( e.getX(), e.getY() );
+		if (slot < 0)
+			return null;
+
+		String label = alarmLabels[ model.zone(slot) ];
+		return label == null || label.isEmpty() ? null : label;
+	}
+
+	/**
+	  * Removes a clock after the user clicked its "remove" button
+	  */
+	private void removeClicked(int slot) {
+		removeClock( slot, model.zone(slot) );
+
+		// Get the main window
+		MainWindow mw = (MainWindow) SwingUtilities.getAncestorOfClass(
+			MainWindow.class, this);
+
+		// Pack and update the main window to see the clock removed
+		if (mw != null) {
 			mw.pack();
 			mw.revalidate();
-		});
+		}
+	}
 
-		add(cc);
-		revalidate();
-		updateUI();
+	/**
+	  * Paints the clocks in view, one at a time, through the renderer
+	  */
+	@Override
+	protected void paintComponent(Graphics g) {
+		super.paintComponent(g);
 
-		return true;
+		if (model.size() == 0)
+			return;
+
+		Rectangle clip = g.getClipBounds();
+		Rectangle first = cellBounds(0);
+		int rowHeight = first.height + GAP;
+
+		int firstRow = clip == null ? 0 : clip.y / rowHeight;
+		int lastRow = clip == null ? Integer.MAX_VALUE : (clip.y + clip.height) / rowHeight;
+		int end = (int) Math.min( model.size(), (lastRow + 1L) * COLUMNS );
+
+		for (int slot = firstRow * COLUMNS; slot < end; slot++) {
+			Rectangle cell = cellBounds(slot);
+			prepareRenderer(slot, cell);
+			rendererPane.paintComponent(g, renderer, this, cell.x, cell.y, cell.width, cell.height);
+		}
+
+		rendererPane.removeAll();
 	}
 
 	/**
-	  * Updates all clocks inside this wall
+	  * Sets the renderer up to display one clock
 	  */
-	public void updateClocks() {
-		for (ClockContainer cc : containers.values())
-			cc.updateTime(mainTime);
+	private void prepareRenderer(int slot, Rectangle cell) {
+		int group = slotGroups[slot];
+
+		renderer.clock.wallClocks = model.size();
+		renderer.clock.shared = groupSizes[group] > 1;
+		renderer.update(
+			model, slot, zoneName(slot), groupTimes[group],
+			alarmLabels[ model.zone(slot) ]
+		);
+		renderer.fit(cell.width, cell.height);
+	}
+
+	/**
+	  * Returns the full name of a slot's zone. Every clock of a zone
+	  * shares one name, which only changes along with the offset.
+	  */
+	private String zoneName(int slot) {
+		int zone = model.zone(slot);
+		if (zoneNames[zone] == null || namedOffsets[zone] != model.offset(slot)) {
+			zoneNames[zone] = model.zoneName(slot);
+			namedOffsets[zone] = model.offset(slot);
+		}
+
+		return zoneNames[zone];
+	}
+
+	/**
+	  * Updates all clocks inside this wall to the main time.
+	  * Other classes change the wall through setMainTime() and the
+	  * other methods that can be called from any thread.
+	  */
+	private void updateClocks() {
+		if (mainTime == null)
+			return;
+
+		WallEvents.Tick event = new WallEvents.Tick();
+		event.begin();
+
+		// Publish first, so followers can show this time at the same moment
+		if (leaderFile != null)
+			leaderFile.write( mainTime.toEpochSecond() );
+
+		model.update( mainTime.toEpochSecond() );
+		updateViews();
+		advanceAlarms( mainTime.toEpochSecond() );
+
+		event.clocks = model.size();
+		event.epochSecond = mainTime.toEpochSecond();
+		event.commit();
+	}
+
+	/**
+	  * Works out what every clock shows from the model, and repaints the wall.
+	  * Only the clocks in view are painted.
+	  */
+	private void updateViews() {
+		int count = model.size();
+		if (slotGroups.length < count)
+			slotGroups = new int[ Math.max(count, slotGroups.length * 2) ];
+
+		// Groups are formed again every tick, so a zone that changes
+		// its offset (for DST) simply moves to another group
+		groupCount = 0;
+		for (int i = 0; i < count; i++) {
+			int group = group( model.offset(i) );
+			slotGroups[i] = group;
+			groupSizes[group]++;
+		}
+
+		for (int g = 0; g < groupCount; g++) {
+			int secondOfDay = (int) Math.floorMod(model.time() + groupOffsets[g], 86400L);
+			groupTimes[g] = ClockContainer.formatter.format( LocalTime.ofSecondOfDay(secondOfDay) );
+		}
+
+		repaint();
+	}
+
+	/**
+	  * Returns the group of clocks with the given offset, adding it if needed.
+	  * There are only a few dozen offsets in use, so a linear search is enough.
+	  * @param offset the UTC offset, in seconds
+	  * @return the index of the group
+	  */
+	private int group(int offset) {
+		for (int g = 0; g < groupCount; g++)
+			if (groupOffsets[g] == offset)
+				return g;
+
+		if (groupCount == groupOffsets.length) {
+			groupOffsets = Arrays.copyOf(groupOffsets, groupCount * 2);
+			groupSizes = Arrays.copyOf(groupSizes, groupCount * 2);
+			groupTimes = Arrays.copyOf(groupTimes, groupCount * 2);
+		}
+
+		groupOffsets[groupCount] = offset;
+		groupSizes[groupCount] = 0;
+		groupTimes[groupCount] = null;
+		return groupCount++;
 	}
 }
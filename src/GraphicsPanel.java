@@ -5,8 +5,16 @@ import java.awt.Graphics2D;
 import java.awt.Color;
 import java.awt.BasicStroke;
 import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.RenderingHints;
 import java.awt.Point;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import java.awt.event.MouseEvent;
 
@@ -32,6 +40,42 @@ public class GraphicsPanel extends JPanel {
 
 	static final double TWO_PI = 2 * Math.PI;
 
+	// Levels of detail. Small clocks can't show fine detail anyway,
+	// so they are drawn more simply (and more quickly).
+	static final int DETAIL_FULL = 0;
+	static final int DETAIL_SIMPLE = 1;
+	static final int DETAIL_DIGITAL = 2;
+
+	// Clocks at least this wide (in pixels) are drawn in full detail,
+	// unless the wall has more than denseWallClocks clocks on it.
+	// These can be changed with -Dclockwall.fullDetailSize=... and so on.
+	static int fullDetailSize = Integer.getInteger("clockwall.fullDetailSize", 120);
+	static int simpleDetailSize = Integer.getInteger("clockwall.simpleDetailSize", 60);
+	static int denseWallClocks = Integer.getInteger("clockwall.denseWallClocks", 200);
+
+	// The number of clocks on the wall this clock belongs to
+	int wallClocks = 1;
+
+	// True if other clocks show the same time at the same size. Shared clocks
+	// in full detail are drawn once into an image, which they all copy.
+	// Only clocks painted on the event dispatch thread may be shared.
+	boolean shared;
+
+	// Images of shared clock faces, keyed by faceKey(), least recently used first
+	static final int MAX_SHARED_PIXELS = 4 * 1024 * 1024;
+	private static int sharedPixels;
+	private static final Map<Long, BufferedImage> sharedFaces = new LinkedHashMap<>(16, 0.75f, true);
+
+	// The text drawn by the digital level of detail, and its font
+	private final char[] digits = new char[8];
+	private Font digitalFont;
+
+	static final BasicStroke thinStroke = new BasicStroke(1);
+	static final BasicStroke tickStroke = new BasicStroke(2);
+	static final BasicStroke secondStroke = new BasicStroke(3);
+	static final BasicStroke minuteStroke = new BasicStroke(5);
+	static final BasicStroke hourStroke = new BasicStroke(10);
+
 	/**
 	  * Initializes the clock with default values
 	  */
@@ -61,12 +105,28 @@ public class GraphicsPanel extends JPanel {
 	  * @param width the new width and height of the clock
 	  */
 	void changeSize(int width) {
+		if (width != canvasWidth)
+			digitalFont = null;
+
 		canvasWidth = canvasHeight = width;
 		rad = width * 3/8;
 
 		setPreferredSize( new Dimension(width, width) );
 	}
 
+	/**
+	  * Sets the hands to the time of one clock in a model.
+	  * This lets a single panel draw any number of clocks in turn.
+	  * Like changing the fields directly, repaint() must be called afterwards.
+	  * @param model the model that holds the clock
+	  * @param slot the slot of the clock in the model
+	  */
+	void showTime(ClockModel model, int slot) {
+		hour = model.hour(slot);
+		minute = model.minute(slot);
+		second = model.second(slot);
+	}
+
 	/**
 	  * Optional mouse press event handler that changes the selected hand.
 	  * @param e the mouse event to handle
@@ -187,6 +247,20 @@ public class GraphicsPanel extends JPanel {
 		return Math.abs(a - b) < 0.1;
 	}
 
+	/**
+	  * Returns how much detail this clock should be drawn with,
+	  * depending on its size and how crowded its wall is
+	  * @return DETAIL_FULL, DETAIL_SIMPLE or DETAIL_DIGITAL
+	  */
+	public int detail() {
+		if (canvasWidth < simpleDetailSize)
+			return DETAIL_DIGITAL;
+		else if (canvasWidth < fullDetailSize || wallClocks > denseWallClocks)
+			return DETAIL_SIMPLE;
+		else
+			return DETAIL_FULL;
+	}
+
 	/**
 	  * Paints the clock according to the hour, minute, and second fields
 	  * @param g the Graphics object for this panel
@@ -195,19 +269,93 @@ public class GraphicsPanel extends JPanel {
 	public void paintComponent(Graphics g) {
 		super.paintComponents(g);
 
+		WallEvents.Paint event = new WallEvents.Paint();
+		event.begin();
+
 		// Graphics2D has more features than Graphics
 		Graphics2D g2 = (Graphics2D) g;
 
-		// Enable antialiasing
-		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		if (shared && detail() == DETAIL_FULL) {
+			double scale = g2.getTransform().getScaleX();
+			g2.drawImage(sharedFace(scale), 0, 0, canvasWidth, canvasHeight, null);
+		}
+		else {
+			paintClock(g2);
+		}
+
+		event.size = canvasWidth;
+		event.detail = detail();
+		event.commit();
+	}
 
+	/**
+	  * Paints the background and the clock, with the right level of detail
+	  */
+	private void paintClock(Graphics2D g2) {
 		// Draw background
 		g2.setColor(Color.WHITE);
 		g2.fillRect(0, 0, canvasWidth, canvasHeight);
 
+		switch ( detail() ) {
+			case DETAIL_FULL:
+				paintFull(g2);
+				break;
+			case DETAIL_SIMPLE:
+				paintSimple(g2);
+				break;
+			case DETAIL_DIGITAL:
+				paintDigital(g2);
+				break;
+		}
+	}
+
+	/**
+	  * Returns the shared image of this clock's face at its size and time,
+	  * drawing it if no other clock has yet.
+	  * @param scale the screen's scale, so the image stays sharp on HiDPI screens
+	  * @return the image of this clock's face
+	  */
+	private BufferedImage sharedFace(double scale) {
+		int pixelSize = (int) Math.ceil(canvasWidth * scale);
+		long key = ((long) pixelSize << 32) | ((long) canvasWidth << 17) | (hour << 12) | (minute << 6) | second;
+
+		BufferedImage face = sharedFaces.get(key);
+		if (face != null)
+			return face;
+
+		face = new BufferedImage(pixelSize, pixelSize, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2 = face.createGraphics();
+		try {
+			g2.setTransform( AffineTransform.getScaleInstance(scale, scale) );
+			paintClock(g2);
+		} finally {
+			g2.dispose();
+		}
+
+		// Makes room by dropping the least recently used faces
+		sharedFaces.put(key, face);
+		sharedPixels += pixelSize * pixelSize;
+
+		Iterator<BufferedImage> oldest = sharedFaces.values().iterator();
+		while (sharedPixels > MAX_SHARED_PIXELS && sharedFaces.size() > 1) {
+			BufferedImage old = oldest.next();
+			sharedPixels -= old.getWidth() * old.getHeight();
+			oldest.remove();
+		}
+
+		return face;
+	}
+
+	/**
+	  * Paints an antialiased clock face with tickmarks
+	  */
+	private void paintFull(Graphics2D g2) {
+		// Enable antialiasing
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
 		// draw tickmarks for each hour
 		g2.setColor(Color.BLACK);
-		g2.setStroke( new BasicStroke(2) );
+		g2.setStroke(tickStroke);
 		for (float t = 0; t < TWO_PI; t += TWO_PI / 12) {
 			int x1 = (int) (canvasWidth/2 + rad * Math.cos(t));
 			int y1 = (int) (canvasHeight/2 + rad * Math.sin(t));
@@ -220,26 +368,98 @@ public class GraphicsPanel extends JPanel {
 
 		// draw hour hand
 		Point hourPoint = getHourPoint();
-		g2.setStroke( new BasicStroke(10) );
+		g2.setStroke(hourStroke);
 		g2.drawLine(canvasWidth/2, canvasHeight/2, hourPoint.x, hourPoint.y);
 
 		// draw minute hand
 		Point minutePoint = getMinutePoint();
-		g2.setStroke( new BasicStroke(5) );
+		g2.setStroke(minuteStroke);
 		g2.drawLine(canvasWidth/2, canvasHeight/2, minutePoint.x, minutePoint.y);
 
 		// draw second hand
 		Point secondPoint = getSecondPoint();
 		g2.setColor(Color.RED);
-		g2.setStroke( new BasicStroke(3) );
+		g2.setStroke(secondStroke);
 		g2.drawLine(canvasWidth/2, canvasHeight/2, secondPoint.x, secondPoint.y);
 
 		// draw border (circle)
 		g2.setColor(Color.BLACK);
-		g2.setStroke( new BasicStroke(5) );
+		g2.setStroke(minuteStroke);
 		g2.drawOval(canvasWidth/2 - rad, canvasHeight/2 - rad, rad * 2, rad * 2);
 	}
 
+	/**
+	  * Paints a plain clock face: no tickmarks, no antialiasing, thin lines
+	  */
+	private void paintSimple(Graphics2D g2) {
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+
+		g2.setColor(Color.BLACK);
+		g2.setStroke(secondStroke);
+		Point hourPoint = getHourPoint();
+		g2.drawLine(canvasWidth/2, canvasHeight/2, hourPoint.x, hourPoint.y);
+
+		g2.setStroke(tickStroke);
+		Point minutePoint = getMinutePoint();
+		g2.drawLine(canvasWidth/2, canvasHeight/2, minutePoint.x, minutePoint.y);
+
+		g2.setColor(Color.RED);
+		g2.setStroke(thinStroke);
+		Point secondPoint = getSecondPoint();
+		g2.drawLine(canvasWidth/2, canvasHeight/2, secondPoint.x, secondPoint.y);
+
+		g2.setColor(Color.BLACK);
+		g2.setStroke(tickStroke);
+		g2.drawOval(canvasWidth/2 - rad, canvasHeight/2 - rad, rad * 2, rad * 2);
+	}
+
+	/**
+	  * Paints the time as text ("hh:mm:ss"), for clocks too small to read
+	  */
+	private void paintDigital(Graphics2D g2) {
+		// Leaves a little room on each side of the 8 characters
+		if (digitalFont == null)
+			digitalFont = new Font(Font.MONOSPACED, Font.BOLD, Math.max(1, canvasWidth * 10 / 65));
+
+		digits[0] = (char) ('0' + hour / 10);
+		digits[1] = (char) ('0' + hour % 10);
+		digits[2] = ':';
+		digits[3] = (char) ('0' + minute / 10);
+		digits[4] = (char) ('0' + minute % 10);
+		digits[5] = ':';
+		digits[6] = (char) ('0' + second / 10);
+		digits[7] = (char) ('0' + second % 10);
+
+		g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		g2.setFont(digitalFont);
+		g2.setColor(Color.BLACK);
+
+		FontMetrics fm = g2.getFontMetrics();
+		int x = (canvasWidth - fm.charsWidth(digits, 0, digits.length)) / 2;
+		int y = (canvasHeight - fm.getHeight()) / 2 + fm.getAscent();
+		g2.drawChars(digits, 0, digits.length, x, y);
+	}
+
+	/**
+	  * Draws the clock, at its current size and time, into a new image.
+	  * This works without a screen (even in a headless JVM),
+	  * so the output can be saved or compared against a known image.
+	  * It is painted just as on screen, so a shared clock copies its shared face.
+	  * @return an image of the clock
+	  */
+	public BufferedImage snapshot() {
+		BufferedImage image = new BufferedImage(canvasWidth, canvasHeight, BufferedImage.TYPE_INT_RGB);
+
+		Graphics2D g2 = image.createGraphics();
+		try {
+			paintComponent(g2);
+		} finally {
+			g2.dispose();
+		}
+
+		return image;
+	}
+
 	/**
 	  * Returns the position of the hour hand in 2-dimensional space
 	  * @return the position of the hour hand in 2-dimensional space
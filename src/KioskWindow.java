@@ -0,0 +1,353 @@
+import java.awt.Frame;
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsDevice;
+import java.awt.GraphicsEnvironment;
+import java.awt.Toolkit;
+import java.awt.AWTException;
+import java.awt.BufferCapabilities;
+import java.awt.ImageCapabilities;
+import java.awt.image.BufferStrategy;
+
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+
+import javax.swing.SwingUtilities;
+
+/**
+  * A fullscreen window for dedicated wall displays.
+  * Instead of waiting for Swing to repaint, this window draws the whole
+  * wall itself onto a Canvas, using its own render thread and a
+  * BufferStrategy. It shows the wall's own main time, so it follows live
+  * mode, playback and a leader's ticks just like the wall does, and draws
+  * a frame whenever that time or the clocks change.
+  * Press any key or click anywhere to leave.
+  */
+public class KioskWindow extends Frame implements Runnable {
+	private final Canvas canvas;
+	private final GraphicsDevice device;
+
+	// A single clock panel that is never shown, only used to draw each clock
+	private final GraphicsPanel renderer;
+
+	// The wall's zones are read each frame. When they change, this
+	// window builds its own model of them, so the wall is never locked.
+	private final ClockWall wall;
+	private int[] shownZones;
+	private ClockModel model;
+	private String[] zoneNames;
+	private int[] namedOffsets;
+
+	private final Runnable onClose;
+
+	private volatile boolean running;
+	private Thread renderThread;
+
+	// The labels under each clock are at most this big. They are scaled
+	// down to fit their cells, and left out below MIN_FONT_SIZE, so that
+	// on the densest walls the clocks (by then digital) get the whole cell.
+	static final int MAX_FONT_SIZE = 14;
+	static final int MIN_FONT_SIZE = 8;
+
+	// The fonts of the labels, at the size of the last frame
+	private int fontSize;
+	private Font bold, plain;
+
+	// How often the wall is checked for a new time or new clocks.
+	// Playback changes the time about 30 times a second.
+	static final int POLL_MILLIS = 5;
+
+	/**
+	  * Opens a kiosk window that displays the clocks of a wall.
+	  * @param wall the wall to display, which can keep changing
+	  * @param onClose called on the event dispatch thread after the kiosk closes
+	  * @return true if the kiosk opened, false if this display cannot
+	  *         support it and the caller should keep using the normal window
+	  */
+	public static boolean open(ClockWall wall, Runnable onClose) {
+		if ( GraphicsEnvironment.isHeadless() )
+			return false;
+
+		KioskWindow kiosk = new KioskWindow(wall, onClose);
+
+		try {
+			kiosk.start();
+		} catch (AWTException | IllegalStateException e) {
+			kiosk.device.setFullScreenWindow(null);
+			kiosk.dispose();
+			return false;
+		}
+
+		return true;
+	}
+
+	private KioskWindow(ClockWall wall, Runnable onClose) {
+		super("Time Zone Clock Wall");
+
+		this.wall = wall;
+		this.onClose = onClose;
+
+		device = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
+		renderer = new GraphicsPanel();
+
+		// All painting is done by the render thread, so ignore
+		// any repaint requests that come from the system
+		setUndecorated(true);
+		setIgnoreRepaint(true);
+
+		canvas = new Canvas();
+		canvas.setIgnoreRepaint(true);
+		canvas.setBackground(Color.LIGHT_GRAY);
+		add(canvas);
+
+		// Any key or click leaves the kiosk
+		canvas.addKeyListener(new KeyAdapter() {
+			@Override
+			public void keyPressed(KeyEvent e) {
+				close();
+			}
+		});
+
+		canvas.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				close();
+			}
+		});
+	}
+
+	/**
+	  * Shows the window fullscreen, creates its buffers and starts rendering.
+	  * Page flipping is only possible in fullscreen exclusive mode,
+	  * so blitting is used whenever flipping is refused.
+	  */
+	private void start() throws AWTException {
+		if ( device.isFullScreenSupported() ) {
+			device.setFullScreenWindow(this);
+		}
+		else {
+			setExtendedState(Frame.MAXIMIZED_BOTH);
+			setVisible(true);
+		}
+
+		// Accelerated (volatile) front and back buffers, flipped if possible
+		BufferCapabilities flipping = new BufferCapabilities(
+			new ImageCapabilities(true),
+			new ImageCapabilities(true),
+			BufferCapabilities.FlipContents.UNDEFINED
+		);
+
+		try {
+			canvas.createBufferStrategy(2, flipping);
+		} catch (AWTException e) {
+			canvas.createBufferStrategy(2);
+		}
+
+		if (canvas.getBufferStrategy() == null)
+			throw new IllegalStateException("No buffer strategy available");
+
+		canvas.requestFocus();
+
+		running = true;
+		renderThread = new Thread(this, "Kiosk render loop");
+		renderThread.setDaemon(true);
+		renderThread.start();
+	}
+
+	/**
+	  * Stops rendering. The render loop closes the window once it has
+	  * finished its frame, since the buffers can't be drawn on after that.
+	  */
+	public void close() {
+		if (!running)
+			return;
+
+		running = false;
+		renderThread.interrupt();
+	}
+
+	/**
+	  * Leaves fullscreen mode and closes the window, after the render loop ended
+	  */
+	private void closed() {
+		if (device.getFullScreenWindow() == this)
+			device.setFullScreenWindow(null);
+
+		dispose();
+		onClose.run();
+	}
+
+	/**
+	  * The render loop. Draws a frame whenever the wall's main time or
+	  * clocks change, checking every POLL_MILLIS.
+	  * If the buffers are lost (for example, when the display mode changes
+	  * or the screen is locked), the frame is drawn again until it sticks.
+	  */
+	@Override
+	public void run() {
+		try {
+			renderFrames();
+		} finally {
+			SwingUtilities.invokeLater(this::closed);
+		}
+	}
+
+	private void renderFrames() {
+		BufferStrategy strategy = canvas.getBufferStrategy();
+		ZonedDateTime drawnTime = null;
+		int[] drawnZones = null;
+
+		while (running) {
+			// Both are published by the wall, so they can be read from here
+			ZonedDateTime now = wall.getMainTime();
+			int[] zones = wall.getZones();
+
+			if (now != drawnTime || zones != drawnZones || strategy.contentsLost()) {
+				drawFrame(strategy, now, zones);
+				drawnTime = now;
+				drawnZones = zones;
+			}
+
+			try {
+				Thread.sleep(POLL_MILLIS);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	/**
+	  * Draws one frame, again until the buffers keep it
+	  */
+	private void drawFrame(BufferStrategy strategy, ZonedDateTime now, int[] zones) {
+		do {
+			do {
+				Graphics2D g2 = (Graphics2D) strategy.getDrawGraphics();
+				try {
+					render(g2, canvas.getWidth(), canvas.getHeight(), now, zones);
+				} finally {
+					g2.dispose();
+				}
+			} while ( running && strategy.contentsRestored() );
+
+			strategy.show();
+		} while ( running && strategy.contentsLost() );
+
+		Toolkit.getDefaultToolkit().sync();
+	}
+
+	/**
+	  * Draws every clock in a grid that fills the given area
+	  * @param g2 the graphics to draw with
+	  * @param width the width of the area
+	  * @param height the height of the area
+	  * @param now the time to display, or null if the wall has none yet
+	  * @param zones the wall's zones
+	  */
+	private void render(Graphics2D g2, int width, int height, ZonedDateTime now, int[] zones) {
+		g2.setColor(Color.LIGHT_GRAY);
+		g2.fillRect(0, 0, width, height);
+
+		// A follower has no time until the leader's first tick
+		if (now == null)
+			return;
+
+		if (zones != shownZones) {
+			model = new ClockModel();
+			for (int zone : zones)
+				model.add(zone);
+
+			zoneNames = new String[zones.length];
+			namedOffsets = new int[zones.length];
+			shownZones = zones;
+		}
+
+		model.update( now.toEpochSecond() );
+
+		int count = model.size();
+		if (count == 0 || width <= 0 || height <= 0)
+			return;
+
+		// Picks the number of columns so each cell is about as wide as it is tall
+		int cols = (int) Math.ceil( Math.sqrt(count * (double) width / height) );
+		cols = Math.max(1, Math.min(cols, count));
+		int rows = (count + cols - 1) / cols;
+
+		int cellWidth = width / cols;
+		int cellHeight = height / rows;
+
+		// Leaves room for two lines of text under each clock, with a font
+		// that takes up at most a third of the cell's height
+		int fontSize = Math.min( MAX_FONT_SIZE, Math.min(cellHeight / 8, cellWidth / 10) );
+		boolean labels = fontSize >= MIN_FONT_SIZE;
+		int lineHeight = fontSize * 13 / 10;
+		int textHeight = labels ? 2 * lineHeight + 4 : 0;
+
+		if (labels && fontSize != this.fontSize) {
+			bold = new Font("Helvetica", Font.BOLD, fontSize);
+			plain = new Font("Helvetica", Font.PLAIN, fontSize);
+			this.fontSize = fontSize;
+		}
+
+		// The margin shrinks along with the cell, so a clock always fits
+		int margin = Math.min( 5, Math.min(cellWidth, cellHeight) / 10 );
+		int size = Math.max( 1, Math.min(cellWidth, cellHeight - textHeight) - 2 * margin );
+
+		renderer.changeSize(size);
+		renderer.wallClocks = count;
+
+		for (int i = 0; i < count; i++) {
+			int x = (i % cols) * cellWidth;
+			int y = (i / cols) * cellHeight;
+
+			renderer.showTime(model, i);
+
+			// Draws the clock centered at the top of its cell
+			int cx = x + (cellWidth - size) / 2;
+			Graphics2D cg = (Graphics2D) g2.create(cx, y + margin, size, size);
+			try {
+				renderer.paintComponent(cg);
+			} finally {
+				cg.dispose();
+			}
+
+			if (!labels)
+				continue;
+
+			// The zone name only changes along with the offset
+			if (zoneNames[i] == null || namedOffsets[i] != model.offset(i)) {
+				zoneNames[i] = model.zoneName(i);
+				namedOffsets[i] = model.offset(i);
+			}
+
+			String time = ClockContainer.formatter.format( LocalTime.ofSecondOfDay(model.secondOfDay(i)) );
+			int top = y + margin + size;
+
+			// Names wider than the cell are cut off at its edge
+			g2.setClip(x, y, cellWidth, cellHeight);
+			drawCentered(g2, zoneNames[i], bold, x, cellWidth, top + lineHeight);
+			drawCentered(g2, time, plain, x, cellWidth, top + 2 * lineHeight);
+			g2.setClip(null);
+		}
+	}
+
+	/**
+	  * Draws a line of text horizontally centered in a cell,
+	  * or from its left edge if it is too wide to center
+	  */
+	private static void drawCentered(Graphics2D g2, String text, Font font, int x, int width, int baseline) {
+		g2.setFont(font);
+		g2.setColor(Color.BLACK);
+
+		FontMetrics fm = g2.getFontMetrics();
+		g2.drawString(text, x + Math.max(0, (width - fm.stringWidth(text)) / 2), baseline);
+	}
+}
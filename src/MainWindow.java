@@ -1,6 +1,9 @@
 import java.awt.Frame;
 import java.awt.Font;
 import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
@@ -9,24 +12,40 @@ import javax.swing.JComboBox;
 import javax.swing.DefaultComboBoxModel;
 import javax.swing.JTextField;
 import javax.swing.JButton;
+import javax.swing.ImageIcon;
 import javax.swing.JScrollPane;
+import javax.swing.JViewport;
 import javax.swing.ScrollPaneConstants;
 
 import javax.swing.JOptionPane;
 import javax.swing.WindowConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.GroupLayout;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.time.zone.ZoneRulesProvider;
 import java.time.temporal.ChronoField;
 import java.time.format.DateTimeFormatter;
 import java.time.format.TextStyle;
 
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 import java.util.Locale;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.TreeMap;
 import java.util.Collection;
+import java.util.concurrent.ExecutionException;
 
 
 /**
@@ -38,15 +57,31 @@ public class MainWindow extends JFrame {
 
 	private JLabel label_title, label_mainTime, label_newTime, label_time;
 	private JComboBox<String> combo_main, combo_new;
-	private JButton btn_mainTime, btn_addTime;
+	private JComboBox<Workspace> combo_workspace;
+	private JButton btn_mainTime, btn_addTime, btn_kiosk, btn_newWorkspace;
 
+	// Created the first time the user selects a time
 	private TimeDialog timeDialog;
 	private ClockWall clockWall;
+	private PlaybackBar playbackBar;
 	private JScrollPane clockScroll;
 
+	// Every workspace shares the one clock wall. Only the shown workspace
+	// has components; the others only keep their zones and last frame.
+	private Workspace workspace;
+
 	private ZoneId mainTimeZone;
 	private ZonedDateTime mainTime;
 
+	// Full time zone names, mapped to their IDs.
+	// Empty until the catalog is loaded after the first frame.
+	private Map<String, String> zones = new HashMap<>();
+
+	// When main() was entered, and whether the first frame was painted
+	private static long startNanos;
+	private static boolean exitAfterFirstFrame;
+	private boolean painted;
+
 	// Time zone: hour:minute:second AM/PM
 	static DateTimeFormatter formatter = DateTimeFormatter.ofPattern("zzzz: hh:mm:ss a");
 
@@ -71,38 +106,28 @@ public class MainWindow extends JFrame {
 		label_time = new JLabel("Time:");
 		label_time.setFont( new Font("Helvetica", Font.BOLD, 16) );
 
-		// Gets a collection of all time zones in their full text format
-		// For example, ZoneId "GMT" turns into "Greenwich Mean Time"
-		Map<String, String> zones = new HashMap<>();
-		for (String id : ZoneId.getAvailableZoneIds())
-			zones.put(ZoneId.of(id).getDisplayName(TextStyle.FULL, Locale.getDefault()), id);
-
-		// Sorts the time zones and adds them to a String array
-		// to be used as JComboBox selection options
-		String[] options = zones.keySet()
-			.stream()
-			.sorted()
-			.toArray(String[]::new);
-
-		combo_main = new JComboBox<String>(options);
+		// The selection options are filled in by loadZones()
+		combo_main = new JComboBox<String>();
 		combo_main.setFont(subtitle);
 
-		combo_new = new JComboBox<String>(options);
+		combo_new = new JComboBox<String>();
 		combo_new.setFont(subtitle);
 
 		// When the user selects a new MAIN time zone, update existing
 		// clocks to display the correct time
 		combo_main.addActionListener(evt -> {
+			// The wall's time may have moved on (live mode or playback)
+			ZonedDateTime current = clockWall.getMainTime();
+
 			// Unless the user hasn't selected a time, of course
-			if (mainTime == null)
+			if (current == null)
 				return;
 
 			String id = (String) combo_main.getSelectedItem();
 			mainTimeZone = ZoneId.of(id, zones);
-			mainTime = mainTime.withZoneSameLocal(mainTimeZone);
+			mainTime = current.withZoneSameLocal(mainTimeZone);
 
 			clockWall.setMainTime(mainTime);
-			clockWall.updateClocks();
 
 			label_time.setText( formatter.format(mainTime) );
 		});
@@ -116,7 +141,7 @@ public class MainWindow extends JFrame {
 		// When the user clicks "Click to select time",
 		// open the time dialog and prompt them to select a time.
 		btn_mainTime.addActionListener(evt -> {
-			timeDialog.setVisible(true);
+			getTimeDialog().setVisible(true);
 		});
 
 		// When the user clicks "Add to clock wall", add the selected time,
@@ -124,7 +149,7 @@ public class MainWindow extends JFrame {
 		btn_addTime.addActionListener(evt -> {
 			String id = (String) combo_new.getSelectedItem();
 
-			if (mainTime == null) {
+			if (clockWall.getMainTime() == null) {
 				JOptionPane.showMessageDialog(
 					this,
 					"Please select a timezone and time",
@@ -134,36 +159,69 @@ public class MainWindow extends JFrame {
 				return;
 			}
 
+			// The time zones haven't finished loading yet
+			if (id == null)
+				return;
+
+			// The new clock shows the wall's current time, which playback
+			// or live mode may have moved on from mainTime.
 			// Packing a frame takes some effort, so only do it when you must
-			clockWall.setMainTime(mainTime);
-			if ( clockWall.addTimeZone(zones.get(id)) ) {
-				clockWall.updateClocks();
+			if ( clockWall.addTimeZone(zones.get(id)) )
 				pack();
+		});
+
+		btn_kiosk = new JButton("Full screen");
+		btn_kiosk.setFont(subtitle);
+
+		// When the user clicks "Full screen", hand the wall over to a
+		// fullscreen kiosk window. If this display can't do that,
+		// keep showing the wall in this window instead.
+		btn_kiosk.addActionListener(evt -> {
+			boolean opened = KioskWindow.open( clockWall, () -> setVisible(true) );
+
+			if (opened) {
+				// The kiosk shows the wall's time, so keep it running,
+				// unless it is playing back or following a leader
+				if ( playbackBar.isEnabled() && !playbackBar.isPlaying() )
+					clockWall.setLive(true);
+
+				setVisible(false);
 			}
+			else
+				JOptionPane.showMessageDialog(
+					this,
+					"Full screen mode is not available on this display",
+					"ERROR",
+					JOptionPane.ERROR_MESSAGE
+				);
 		});
 
-		timeDialog = new TimeDialog(this, "Select a time");
-		timeDialog.setResizable(false);
+		workspace = new Workspace("Default");
 
-		// When the user clicks "submit", inside the time dialog,
-		// set the time and update existing clocks
-		timeDialog.btn_submit.addActionListener(evt -> {
-			String tz = (String) combo_main.getSelectedItem();
+		combo_workspace = new JComboBox<Workspace>();
+		combo_workspace.addItem(workspace);
+		combo_workspace.setFont(subtitle);
 
-			if (tz == null)
-				return;
+		btn_newWorkspace = new JButton("New workspace");
+		btn_newWorkspace.setFont(subtitle);
 
-			mainTimeZone = ZoneId.of(tz, zones);
-			mainTime = ZonedDateTime.now(mainTimeZone)
-				.with(ChronoField.HOUR_OF_DAY, timeDialog.getHour())
-				.with(ChronoField.MINUTE_OF_HOUR, timeDialog.getMinute())
-				.with(ChronoField.SECOND_OF_MINUTE, timeDialog.getSecond());
+		// When the user picks another workspace, show its wall
+		combo_workspace.addActionListener(evt -> {
+			Workspace selected = (Workspace) combo_workspace.getSelectedItem();
+			if (selected != null && selected != workspace)
+				showWorkspace(selected);
+		});
 
-			label_time.setText( formatter.format(mainTime) );
+		// When the user clicks "New workspace", ask for a name
+		// and switch to a new, empty wall
+		btn_newWorkspace.addActionListener(evt -> {
+			String name = JOptionPane.showInputDialog(this, "Name of the new workspace:");
+			if (name == null || name.isBlank())
+				return;
 
-			timeDialog.setVisible(false);
-			clockWall.setMainTime(mainTime);
-			clockWall.updateClocks();
+			Workspace created = new Workspace( name.strip() );
+			combo_workspace.addItem(created);
+			combo_workspace.setSelectedItem(created);
 		});
 
 		// Creates the wall of clocks and adds a vertical-only scrollbar		
@@ -171,6 +229,9 @@ public class MainWindow extends JFrame {
 		clockScroll = new JScrollPane(clockWall);
 		clockScroll.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
 
+		// Controls for playing the wall back as a timelapse
+		playbackBar = new PlaybackBar(clockWall);
+
 		// --------- LAYOUT ----------
 
 		// This panel is used as the main container for the GUI.
@@ -195,7 +256,18 @@ public class MainWindow extends JFrame {
 
 		layout.setHorizontalGroup(
 			layout.createParallelGroup()
-				.addComponent(label_title)
+				.addGroup(
+					layout.createSequentialGroup()
+						.addComponent(label_title)
+						.addGap(20)
+						.addComponent(
+							combo_workspace,
+							GroupLayout.DEFAULT_SIZE,
+							GroupLayout.PREFERRED_SIZE,
+							GroupLayout.PREFERRED_SIZE
+						)
+						.addComponent(btn_newWorkspace)
+				)
 				.addGroup(
 					layout.createSequentialGroup()
 						.addGroup(
@@ -235,13 +307,29 @@ public class MainWindow extends JFrame {
 								)
 						)
 				)
-				.addComponent(label_time)
+				.addGroup(
+					layout.createSequentialGroup()
+						.addComponent(label_time)
+						.addGap(20)
+						.addComponent(btn_kiosk)
+				)
+				.addComponent(playbackBar)
 				.addComponent(clockScroll)
 		);
 
 		layout.setVerticalGroup(
 			layout.createSequentialGroup()
-				.addComponent(label_title)
+				.addGroup(
+					layout.createParallelGroup(GroupLayout.Alignment.CENTER)
+						.addComponent(label_title)
+						.addComponent(
+							combo_workspace,
+							GroupLayout.DEFAULT_SIZE,
+							GroupLayout.PREFERRED_SIZE,
+							GroupLayout.PREFERRED_SIZE
+						)
+						.addComponent(btn_newWorkspace)
+				)
 				.addGroup(
 					layout.createParallelGroup()
 						.addComponent(label_mainTime)
@@ -264,7 +352,17 @@ public class MainWindow extends JFrame {
 						)
 						.addComponent(btn_addTime)
 				)
-				.addComponent(label_time)
+				.addGroup(
+					layout.createParallelGroup(GroupLayout.Alignment.CENTER)
+						.addComponent(label_time)
+						.addComponent(btn_kiosk)
+				)
+				.addComponent(
+					playbackBar,
+					GroupLayout.PREFERRED_SIZE,
+					GroupLayout.PREFERRED_SIZE,
+					GroupLayout.PREFERRED_SIZE
+				)
 				.addComponent(clockScroll)
 		);
 
@@ -272,11 +370,269 @@ public class MainWindow extends JFrame {
 		pack();
 	}
 
-	public static void main(String[] args) {
+	/**
+	  * Returns the wall of clocks in this window
+	  * @return the wall of clocks
+	  */
+	ClockWall getClockWall() {
+		return clockWall;
+	}
+
+	/**
+	  * Switches the wall to another workspace. The current wall is reduced
+	  * to its zones and a picture of it. The new workspace's picture (if it
+	  * has one) is shown straight away, then its clocks are built in one pass.
+	  * @param next the workspace to show
+	  */
+	private void showWorkspace(Workspace next) {
+		JViewport viewport = clockScroll.getViewport();
+
+		workspace.zones = clockWall.getZones();
+		workspace.lastFrame = captureFrame(viewport);
+		workspace = next;
+
+		if (next.lastFrame == null) {
+			clockWall.setZones(next.zones);
+			return;
+		}
+
+		// Shows the picture now, and builds the real clocks once it's painted
+		viewport.setView( new JLabel(new ImageIcon(next.lastFrame)) );
+		SwingUtilities.invokeLater(() -> {
+			if (workspace != next)
+				return;
+
+			clockWall.setZones(next.zones);
+			viewport.setView(clockWall);
+		});
+	}
+
+	/**
+	  * Paints what is currently in view into an image
+	  * @param viewport the viewport to paint
+	  * @return an image of the viewport, or null if it has no size
+	  */
+	private static BufferedImage captureFrame(JViewport viewport) {
+		if (viewport.getWidth() <= 0 || viewport.getHeight() <= 0)
+			return null;
+
+		BufferedImage image = new BufferedImage(
+			viewport.getWidth(), viewport.getHeight(), BufferedImage.TYPE_INT_RGB
+		);
+
+		Graphics2D g2 = image.createGraphics();
+		try {
+			viewport.paint(g2);
+		} finally {
+			g2.dispose();
+		}
+
+		return image;
+	}
+
+	/**
+	  * Returns the time dialog, creating it the first time it is needed
+	  * @return the time dialog
+	  */
+	private TimeDialog getTimeDialog() {
+		if (timeDialog == null) {
+			timeDialog = new TimeDialog(this, "Select a time");
+			timeDialog.setResizable(false);
+
+			// When the user clicks "submit", inside the time dialog,
+			// set the time and update existing clocks
+			timeDialog.btn_submit.addActionListener(evt -> {
+				String tz = (String) combo_main.getSelectedItem();
+
+				if (tz == null)
+					return;
+
+				mainTimeZone = ZoneId.of(tz, zones);
+				mainTime = ZonedDateTime.now(mainTimeZone)
+					.with(ChronoField.HOUR_OF_DAY, timeDialog.getHour())
+					.with(ChronoField.MINUTE_OF_HOUR, timeDialog.getMinute())
+					.with(ChronoField.SECOND_OF_MINUTE, timeDialog.getSecond());
+
+				label_time.setText( formatter.format(mainTime) );
+
+				timeDialog.setVisible(false);
+				clockWall.setMainTime(mainTime);
+			});
+		}
+
+		return timeDialog;
+	}
+
+	/**
+	  * Loads the full names of every time zone in the background,
+	  * then fills in the time zone selection options.
+	  */
+	private void loadZones() {
+		new SwingWorker<Map<String, String>, Void>() {
+			@Override
+			protected Map<String, String> doInBackground() {
+				// Gets a collection of all time zones in their full text format
+				// For example, ZoneId "GMT" turns into "Greenwich Mean Time"
+				// A TreeMap keeps the names sorted.
+				Map<String, String> names = new TreeMap<>();
+				for (String id : ZoneId.getAvailableZoneIds())
+					names.put(ZoneId.of(id).getDisplayName(TextStyle.FULL, Locale.getDefault()), id);
+
+				return names;
+			}
+
+			@Override
+			protected void done() {
+				try {
+					zones = get();
+				} catch (InterruptedException | ExecutionException e) {
+					throw new IllegalStateException("Could not load time zones", e);
+				}
+
+				String[] options = zones.keySet().toArray(String[]::new);
+				combo_main.setModel( new DefaultComboBoxModel<String>(options) );
+				combo_new.setModel( new DefaultComboBoxModel<String>(options) );
+				panel.revalidate();
+			}
+		}.execute();
+	}
+
+	/**
+	  * Paints the window. After the first frame, reports how long
+	  * startup took and starts loading everything that was put off.
+	  */
+	@Override
+	public void paint(Graphics g) {
+		super.paint(g);
+
+		if (painted)
+			return;
+		painted = true;
+
+		// Measures from when the JVM started, if the OS can tell us,
+		// so that JVM startup (and class loading) is included
+		long millis = ProcessHandle.current().info().startInstant()
+			.map(start -> Duration.between(start, Instant.now()).toMillis())
+			.orElse( (System.nanoTime() - startNanos) / 1_000_000 );
+
+		System.out.println("Time to first frame: " + millis + " ms");
+
+		if (exitAfterFirstFrame) {
+			SwingUtilities.invokeLater(() -> System.exit(0));
+			return;
+		}
+
+		SwingUtilities.invokeLater(this::loadZones);
+	}
+
+	/**
+	  * Makes the JDK read time zone rules from the given file,
+	  * unless the file is missing or isn't a rules file.
+	  * Must be called before any time zone is used.
+	  * @param path a file made by ZoneRulesCompiler
+	  */
+	static void useRulesFile(Path path) {
+		String fileVersion = rulesFileVersion(path);
+
+		if (fileVersion == null)
+			System.err.println("Not a time zone rules file, using the JDK's rules: " + path);
+		else {
+			System.setProperty("clockwall.tzdb", path.toString());
+			System.setProperty("java.time.zone.DefaultZoneRulesProvider", "MappedZoneRulesProvider");
+		}
+
+		// Shows which rules are really in use, in case the JDK kept its own
+		String version = ZoneRulesProvider.getVersions("UTC").lastKey();
+		System.out.println("Time zone rules: tzdb " + version);
+
+		if (fileVersion != null && !fileVersion.equals(version))
+			System.err.println("Unable to use " + path + " (tzdb " + fileVersion + "), using the JDK's rules");
+	}
+
+	/**
+	  * Returns the tzdb version of a rules file, or null if the file is
+	  * missing or isn't a rules file. This reads the header itself: anything
+	  * that initializes a ZoneRulesProvider (even MappedZoneRulesProvider)
+	  * installs the JDK's rules before the file can be chosen.
+	  */
+	private static String rulesFileVersion(Path path) {
+		// The constants are compiled in, so using them doesn't load the provider
+		try (InputStream file = Files.newInputStream(path);
+			DataInputStream in = new DataInputStream(file)) {
+			if (in.readInt() != MappedZoneRulesProvider.MAGIC || in.readInt() != MappedZoneRulesProvider.FORMAT)
+				return null;
+
+			byte[] version = new byte[ in.readUnsignedShort() ];
+			in.readFully(version);
+			return new String(version, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	  * Starts the app.
+	  * Passing --exit-after-first-frame closes it as soon as the window
+	  * is painted, which is used to create a class data sharing archive.
+	  * Passing --stress (replicas) (minutes) runs a soak test, see StressMode.
+	  * Passing --leader (file) or --follower (file) keeps several walls on
+	  * the same host in step, see TickFile.
+	  * Passing --tzdb (file) reads time zone rules from a file made by
+	  * ZoneRulesCompiler, see MappedZoneRulesProvider.
+	  * @throws IOException if the tick file cannot be opened
+	  * @param args the command line arguments
+	  */
+	public static void main(String[] args) throws IOException {
+		startNanos = System.nanoTime();
+
+		// The rules provider has to be chosen before any time zone is used,
+		// so this is done before anything else
+		for (int i = 0; i + 1 < args.length; i++)
+			if ( args[i].equals("--tzdb") )
+				useRulesFile( Paths.get(args[i + 1]) );
+
+		TickFile tickFile = null;
+		boolean leader = false;
+
+		int stressReplicas = 0;
+		Duration stressDuration = null;
+
+		for (int i = 0; i < args.length; i++) {
+			if ( args[i].equals("--exit-after-first-frame") ) {
+				exitAfterFirstFrame = true;
+			}
+			else if ( args[i].equals("--stress") && i + 2 < args.length ) {
+				stressReplicas = Integer.parseInt(args[++i]);
+				stressDuration = Duration.ofMinutes( Long.parseLong(args[++i]) );
+			}
+			else if ( (args[i].equals("--leader") || args[i].equals("--follower")) && i + 1 < args.length ) {
+				leader = args[i].equals("--leader");
+				tickFile = new TickFile( Paths.get(args[++i]) );
+			}
+		}
+
+		int replicas = stressReplicas;
+		Duration duration = stressDuration;
+		TickFile sync = tickFile;
+		boolean leading = leader;
+
 		SwingUtilities.invokeLater(() -> {
 				MainWindow window = new MainWindow();
-				window.setVisible(true);
+
+				// Maximizing before showing the window saves a second layout
 				window.setExtendedState(window.getExtendedState() | Frame.MAXIMIZED_BOTH);
+				window.setVisible(true);
+
+				if (sync != null && leading)
+					window.getClockWall().lead(sync);
+				else if (sync != null) {
+					// A follower only shows the leader's time
+					window.getClockWall().follow(sync);
+					window.playbackBar.setEnabled(false);
+				}
+
+				if (duration != null)
+					new StressMode(window, replicas, duration).start();
 		});
 	}
 }
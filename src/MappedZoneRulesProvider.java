@@ -0,0 +1,252 @@
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Month;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneOffsetTransitionRule;
+import java.time.zone.ZoneRules;
+import java.time.zone.ZoneRulesException;
+import java.time.zone.ZoneRulesProvider;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+  * A time zone rules provider that reads a compact rules file (made by
+  * ZoneRulesCompiler) through a memory-mapped buffer, so a newer tzdb can
+  * be used without upgrading the JDK.
+  *
+  * The JDK's own provider reads all of its rules onto the heap at startup,
+  * and keeps every zone's rules once they are decoded. This provider only
+  * reads the index of zone IDs. A zone's rules are decoded straight from the
+  * mapping each time a ZoneId is made for it, and nothing is cached here:
+  * the ZoneId (and ClockModel, for the zones on a wall) keeps the rules
+  * of the zones in use, and the rest stay in the file.
+  *
+  * The JDK only accepts a replacement provider at startup. MainWindow sets
+  * it up when started with --tzdb (file), which is the same as running:
+  * java -Dclockwall.tzdb=(file)
+  *      -Djava.time.zone.DefaultZoneRulesProvider=MappedZoneRulesProvider ...
+  */
+public class MappedZoneRulesProvider extends ZoneRulesProvider {
+	// "CWTZ", the first 4 bytes of a rules file
+	static final int MAGIC = 0x4357545A;
+	static final int FORMAT = 2;
+
+	private final MappedByteBuffer buffer;
+	private final String version;
+
+	// Sorted zone IDs, and where each one's rules start in the buffer
+	private final String[] ids;
+	private final int[] offsets;
+
+	// Epoch seconds that are whole quarter hours in this range take 3 bytes
+	static final long EPOCH_BASE = -4575744000L;
+	static final long EPOCH_LIMIT = 10413792000L;
+
+	// Marks an epoch second or an offset that is written in full
+	static final int FULL_EPOCH = 0xFF;
+	static final int FULL_OFFSET = 127;
+
+	// Marks a transition rule with no day of week
+	static final int NO_DAY_OF_WEEK = 0;
+
+	/**
+	  * Maps the rules file named by the clockwall.tzdb system property
+	  * @throws ZoneRulesException if the file cannot be read
+	  */
+	public MappedZoneRulesProvider() {
+		this( Paths.get(System.getProperty("clockwall.tzdb", "tzdb.cwtz")) );
+	}
+
+	/**
+	  * Maps the given rules file
+	  * @param path the rules file
+	  * @throws ZoneRulesException if the file cannot be read
+	  */
+	public MappedZoneRulesProvider(Path path) {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (IOException e) {
+			throw new ZoneRulesException("Unable to map time zone rules: " + path, e);
+		}
+
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT)
+			throw new ZoneRulesException("Not a time zone rules file: " + path);
+
+		ByteBuffer in = buffer.duplicate();
+		in.position(8);
+		version = readString(in);
+
+		// The index is read in bulk, which matters before anything is compiled
+		int count = in.getInt();
+		offsets = new int[count];
+		in.asIntBuffer().get(offsets);
+		in.position( in.position() + 4 * count );
+
+		byte[] names = new byte[ in.getInt() ];
+		in.get(names);
+		String all = new String(names, StandardCharsets.UTF_8);
+
+		ids = new String[count];
+		int start = 0;
+		for (int i = 0; i < count; i++) {
+			int end = all.indexOf('\n', start);
+			ids[i] = all.substring(start, end);
+			start = end + 1;
+		}
+	}
+
+	/**
+	  * Returns the tzdb version of the rules file, such as "2024a"
+	  * @return the tzdb version
+	  */
+	public String getVersion() {
+		return version;
+	}
+
+	@Override
+	protected Set<String> provideZoneIds() {
+		return new HashSet<>( Arrays.asList(ids) );
+	}
+
+	@Override
+	protected ZoneRules provideRules(String zoneId, boolean forCaching) {
+		int index = Arrays.binarySearch(ids, zoneId);
+		if (index < 0)
+			throw new ZoneRulesException("Unknown time-zone ID: " + zoneId);
+
+		// Reads straight from the mapped file, without copying the bytes
+		ByteBuffer in = buffer.duplicate();
+		in.position( offsets[index] );
+
+		try {
+			return readRules(in);
+		} catch (RuntimeException e) {
+			throw new ZoneRulesException("Invalid time zone rules for " + zoneId, e);
+		}
+	}
+
+	@Override
+	protected NavigableMap<String, ZoneRules> provideVersions(String zoneId) {
+		NavigableMap<String, ZoneRules> versions = new TreeMap<>();
+		versions.put( version, provideRules(zoneId, false) );
+		return versions;
+	}
+
+	/**
+	  * Reads one zone's rules, as written by ZoneRulesCompiler.writeRules()
+	  * @param in the buffer, positioned at the start of the rules
+	  * @return the rules
+	  */
+	static ZoneRules readRules(ByteBuffer in) {
+		List<ZoneOffsetTransition> standard = new ArrayList<>();
+		ZoneOffset baseStandard = readTransitions(in, standard);
+
+		List<ZoneOffsetTransition> transitions = new ArrayList<>();
+		ZoneOffset baseWall = readTransitions(in, transitions);
+
+		int count = in.get() & 0xFF;
+		List<ZoneOffsetTransitionRule> lastRules = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+			lastRules.add( readRule(in) );
+
+		return ZoneRules.of(baseStandard, baseWall, standard, transitions, lastRules);
+	}
+
+	/**
+	  * Reads a list of transitions: a 2 byte count, each transition's epoch
+	  * second, then the offset before the first one and after each one.
+	  * @param in the buffer to read from
+	  * @param transitions the list to add the transitions to
+	  * @return the offset before the first transition
+	  */
+	private static ZoneOffset readTransitions(ByteBuffer in, List<ZoneOffsetTransition> transitions) {
+		int count = in.getShort() & 0xFFFF;
+
+		long[] epochSeconds = new long[count];
+		for (int i = 0; i < count; i++)
+			epochSeconds[i] = readEpochSecond(in);
+
+		ZoneOffset base = readOffset(in);
+		ZoneOffset before = base;
+		for (int i = 0; i < count; i++) {
+			ZoneOffset after = readOffset(in);
+			LocalDateTime local = LocalDateTime.ofEpochSecond(epochSeconds[i], 0, before);
+			transitions.add( ZoneOffsetTransition.of(local, before, after) );
+			before = after;
+		}
+
+		return base;
+	}
+
+	private static ZoneOffsetTransitionRule readRule(ByteBuffer in) {
+		Month month = Month.of( in.get() );
+		int dayOfMonth = in.get();
+		int day = in.get();
+		int secondOfDay = in.getInt();
+		ZoneOffsetTransitionRule.TimeDefinition definition =
+			ZoneOffsetTransitionRule.TimeDefinition.values()[ in.get() ];
+
+		ZoneOffset standard = readOffset(in);
+		ZoneOffset before = readOffset(in);
+		ZoneOffset after = readOffset(in);
+
+		boolean endOfDay = secondOfDay == 86400;
+		return ZoneOffsetTransitionRule.of(
+			month, dayOfMonth,
+			day == NO_DAY_OF_WEEK ? null : DayOfWeek.of(day),
+			endOfDay ? LocalTime.MIDNIGHT : LocalTime.ofSecondOfDay(secondOfDay),
+			endOfDay, definition, standard, before, after
+		);
+	}
+
+	/**
+	  * Reads an epoch second: 3 bytes of quarter hours since EPOCH_BASE,
+	  * or FULL_EPOCH followed by 8 bytes
+	  */
+	private static long readEpochSecond(ByteBuffer in) {
+		int first = in.get() & 0xFF;
+		if (first == FULL_EPOCH)
+			return in.getLong();
+
+		int quarters = (first << 16) | ((in.get() & 0xFF) << 8) | (in.get() & 0xFF);
+		return quarters * 900L + EPOCH_BASE;
+	}
+
+	/**
+	  * Reads an offset: 1 byte of quarter hours, or FULL_OFFSET followed by 4 bytes
+	  */
+	private static ZoneOffset readOffset(ByteBuffer in) {
+		int quarters = in.get();
+		if (quarters == FULL_OFFSET)
+			return ZoneOffset.ofTotalSeconds( in.getInt() );
+
+		return ZoneOffset.ofTotalSeconds(quarters * 900);
+	}
+
+	/**
+	  * Reads a string written as a 2 byte length and UTF-8 bytes
+	  */
+	static String readString(ByteBuffer in) {
+		byte[] bytes = new byte[ in.getShort() & 0xFFFF ];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,243 @@
+import javax.swing.JPanel;
+import javax.swing.JLabel;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JSlider;
+import javax.swing.Timer;
+
+import java.awt.Font;
+import java.awt.FlowLayout;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+/**
+  * Controls for playing the wall back as a timelapse, such as
+  * one simulated hour per real second across a DST changeover weekend.
+  * Playback drives the wall through ClockWall.setMainTime(), so every
+  * clock (and its time zone name) changes just as it would in real time.
+  * Playback stops live mode; "Live" goes back to it, at the current time.
+  */
+public class PlaybackBar extends JPanel {
+	private final ClockWall wall;
+
+	private final JComboBox<String> combo_range, combo_speed;
+	private final JButton btn_play, btn_live;
+	private final JSlider slider_seek;
+	private final JLabel label_time;
+
+	// Simulated seconds per real second, for each option of combo_speed
+	static final String[] speedNames = {
+		"Real time", "1 minute / second", "1 hour / second", "1 day / second"
+	};
+	static final long[] speeds = { 1, 60, 60 * 60, 24 * 60 * 60 };
+
+	// The length of the range in days, for each option of combo_range
+	static final String[] rangeNames = { "1 day", "3 days", "1 week" };
+	static final int[] rangeDays = { 1, 3, 7 };
+
+	// About 30 frames per second
+	static final int FRAME_MILLIS = 33;
+
+	static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("EEE d MMM, hh:mm:ss a zzz");
+
+	private final Timer timer;
+
+	// The range being played, and how far into it playback is (in seconds)
+	private ZonedDateTime rangeStart;
+	private long rangeSeconds;
+	private double position;
+	private long lastFrameNanos;
+
+	// True while the slider is being moved by playback, not by the user
+	private boolean movingSlider;
+
+	/**
+	  * Creates the playback controls for a wall
+	  * @param wall the wall to play back
+	  */
+	public PlaybackBar(ClockWall wall) {
+		super( new FlowLayout(FlowLayout.LEADING, 5, 0) );
+
+		this.wall = wall;
+
+		Font font = new Font("Helvetica", Font.PLAIN, 14);
+
+		combo_range = new JComboBox<String>(rangeNames);
+		combo_range.setFont(font);
+
+		combo_speed = new JComboBox<String>(speedNames);
+		combo_speed.setSelectedIndex(2);
+		combo_speed.setFont(font);
+
+		btn_play = new JButton("Play");
+		btn_play.setFont(font);
+
+		btn_live = new JButton("Live");
+		btn_live.setFont(font);
+
+		// The slider moves in minutes, which is fine enough for seeking
+		slider_seek = new JSlider(0, 24 * 60, 0);
+
+		label_time = new JLabel();
+		label_time.setFont(font);
+
+		timer = new Timer(FRAME_MILLIS, evt -> frame());
+
+		// When the user clicks "Play", start (or pause) playback
+		btn_play.addActionListener(evt -> {
+			if ( timer.isRunning() )
+				pause();
+			else
+				play();
+		});
+
+		// When the user clicks "Live", stop playback and run the wall live
+		// from now. The next playback starts a new range on today.
+		btn_live.addActionListener(evt -> live());
+
+		// When the user picks a new range, start again from its beginning
+		combo_range.addActionListener(evt -> {
+			rangeStart = null;
+			if ( timer.isRunning() )
+				play();
+		});
+
+		// When the user drags the slider, jump to that point in the range
+		slider_seek.addChangeListener(evt -> {
+			if (movingSlider || rangeStart == null)
+				return;
+
+			seek( slider_seek.getValue() * 60L );
+		});
+
+		add(combo_range);
+		add(combo_speed);
+		add(btn_play);
+		add(btn_live);
+		add(slider_seek);
+		add(label_time);
+	}
+
+	/**
+	  * Starts playback. The first time, the range starts at midnight
+	  * on the day of the wall's main time (or today, if none is set).
+	  */
+	public void play() {
+		if (rangeStart == null) {
+			ZonedDateTime main = wall.getMainTime();
+			if (main == null)
+				main = ZonedDateTime.now();
+
+			int days = rangeDays[ combo_range.getSelectedIndex() ];
+			rangeStart = main.truncatedTo(ChronoUnit.DAYS);
+			rangeSeconds = ChronoUnit.SECONDS.between(rangeStart, rangeStart.plusDays(days));
+			position = 0;
+
+			movingSlider = true;
+			slider_seek.setMaximum( (int) (rangeSeconds / 60) );
+			movingSlider = false;
+		}
+
+		// After the end of the range, play it again from the beginning
+		if (position >= rangeSeconds)
+			position = 0;
+
+		// Playback replaces live mode, which would fight over the time.
+		// A leader still publishes every frame, so its followers play along.
+		wall.setLive(false);
+
+		lastFrameNanos = System.nanoTime();
+		timer.start();
+		btn_play.setText("Pause");
+	}
+
+	/**
+	  * Stops playback and puts the wall back in live mode, at the current time
+	  */
+	public void live() {
+		pause();
+		rangeStart = null;
+
+		ZonedDateTime main = wall.getMainTime();
+		wall.setMainTime( main != null ? ZonedDateTime.now(main.getZone()) : ZonedDateTime.now() );
+		wall.setLive(true);
+	}
+
+	/**
+	  * Turns the controls on or off. A disabled bar also stops playing.
+	  * @param enabled true to turn the controls on
+	  */
+	@Override
+	public void setEnabled(boolean enabled) {
+		super.setEnabled(enabled);
+
+		if (!enabled)
+			pause();
+
+		combo_range.setEnabled(enabled);
+		combo_speed.setEnabled(enabled);
+		btn_play.setEnabled(enabled);
+		btn_live.setEnabled(enabled);
+		slider_seek.setEnabled(enabled);
+	}
+
+	/**
+	  * Returns true while playback is running
+	  * @return true if playing, false if paused or never started
+	  */
+	public boolean isPlaying() {
+		return timer.isRunning();
+	}
+
+	/**
+	  * Pauses playback, leaving the wall at the current point
+	  */
+	public void pause() {
+		timer.stop();
+		btn_play.setText("Play");
+	}
+
+	/**
+	  * Jumps to a point in the range
+	  * @param seconds how far into the range to jump, in seconds
+	  */
+	public void seek(long seconds) {
+		position = Math.max(0, Math.min(seconds, rangeSeconds));
+		showPosition();
+	}
+
+	/**
+	  * Moves playback forward by the real time since the last frame, times the speed
+	  */
+	private void frame() {
+		long now = System.nanoTime();
+		long speed = speeds[ combo_speed.getSelectedIndex() ];
+		position += (now - lastFrameNanos) / 1e9 * speed;
+		lastFrameNanos = now;
+
+		if (position >= rangeSeconds) {
+			position = rangeSeconds;
+			pause();
+		}
+
+		showPosition();
+	}
+
+	/**
+	  * Shows the current point of the range on the wall and the controls
+	  */
+	private void showPosition() {
+		// Adding seconds to a ZonedDateTime works on the instant, so this
+		// walks straight across DST changes without skipping or repeating
+		ZonedDateTime time = rangeStart.plusSeconds( (long) position );
+		wall.setMainTime(time);
+
+		label_time.setText( formatter.format(time) );
+
+		movingSlider = true;
+		slider_seek.setValue( (int) (position / 60) );
+		movingSlider = false;
+	}
+}
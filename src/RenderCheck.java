@@ -0,0 +1,285 @@
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+/**
+  * Checks that clocks still look and perform the way they did. Renders
+  * clocks and walls at fixed times and sizes (without a screen), compares
+  * each image with a golden image, and fails if painting a frame or a tick
+  * takes more time or allocates more than the stored budget of its scenario.
+  *
+  * Run it from the project folder, headless if there is no screen:
+  * java -Djava.awt.headless=true -cp src RenderCheck
+  *
+  * After an intended change in the look of the clocks, record new golden
+  * images (and check them by eye) with:
+  * java -Djava.awt.headless=true -cp src RenderCheck --update
+  *
+  * Fonts differ from system to system, so golden images should be
+  * recorded on the machine that runs the check.
+  */
+public class RenderCheck {
+	// A pixel differs if any channel is further apart than this,
+	// and an image differs if more than MAX_DIFFERENT of its pixels do
+	static final int CHANNEL_TOLERANCE = 48;
+	static final double MAX_DIFFERENT = 0.001;
+
+	// Frames and ticks measured per scenario, after as many warm-up rounds
+	static final int ROUNDS = 50;
+
+	// The size of the part of a wall that is painted, about one screen's worth
+	static final int FRAME_WIDTH = 855, FRAME_HEIGHT = 700;
+
+	// Every scenario starts at this instant
+	static final long START = ZonedDateTime.of(2024, 3, 31, 0, 59, 30, 0, ZoneOffset.UTC).toEpochSecond();
+
+	private final Path folder;
+	private final boolean update;
+	private final Properties budgets = new Properties();
+
+	private final com.sun.management.ThreadMXBean threads =
+		(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private int failures;
+
+	/**
+	  * Creates a check that uses the golden images and budgets in a folder
+	  * @param folder the folder with the golden images and budgets.properties
+	  * @param update true to record new golden images instead of comparing
+	  */
+	public RenderCheck(Path folder, boolean update) throws IOException {
+		this.folder = folder;
+		this.update = update;
+
+		try (InputStream in = Files.newInputStream( folder.resolve("budgets.properties") )) {
+			budgets.load(in);
+		}
+	}
+
+	/**
+	  * Runs every scenario. Must be called on the event dispatch thread.
+	  * @return true if every scenario passed
+	  */
+	public boolean run() throws IOException {
+		// Single clocks, at each level of detail
+		checkClock("clock-full", 200, 10, 8, 30, false);
+		checkClock("clock-simple", 90, 4, 45, 15, false);
+		checkClock("clock-digital", 50, 12, 0, 5, false);
+
+		// A shared face must look just like a clock painted on its own
+		checkClock("clock-full", 200, 10, 8, 30, true);
+
+		checkWall("wall-1", 1);
+		checkWall("wall-100", 100);
+		checkWall("wall-1000", 1000);
+
+		return failures == 0;
+	}
+
+	/**
+	  * Renders one clock at a fixed time and size, and compares it
+	  */
+	private void checkClock(String name, int size, int hour, int minute, int second, boolean shared)
+			throws IOException {
+		GraphicsPanel clock = new GraphicsPanel();
+		clock.changeSize(size);
+		clock.hour = hour;
+		clock.minute = minute;
+		clock.second = second;
+		clock.shared = shared;
+
+		compare(name + (shared ? " (shared)" : ""), name, clock.snapshot());
+	}
+
+	/**
+	  * Builds a wall of the given number of clocks, and checks how its first
+	  * screen looks, how long it takes to paint and how much a tick allocates
+	  */
+	private void checkWall(String name, int clocks) throws IOException {
+		int[] zones = new int[clocks];
+		for (int i = 0; i < clocks; i++)
+			zones[i] = (int) ((long) i * 7919 % ClockModel.ZONES.length);
+
+		// The times are made beforehand, so only the wall's allocations are counted
+		ZonedDateTime[] times = new ZonedDateTime[2 * ROUNDS + 1];
+		for (int i = 0; i < times.length; i++)
+			times[i] = Instant.ofEpochSecond(START + i).atZone(ZoneOffset.UTC);
+
+		ClockWall wall = new ClockWall();
+		wall.setZones(zones);
+		wall.setMainTime( times[0] );
+		wall.setSize( wall.getPreferredSize().width, wall.getPreferredSize().height );
+		wall.doLayout();
+
+		BufferedImage frame = new BufferedImage(FRAME_WIDTH, FRAME_HEIGHT, BufferedImage.TYPE_INT_RGB);
+		paintFrame(wall, frame);
+		compare(name, name, frame);
+
+		long[] paintNanos = new long[ROUNDS];
+		long allocated = 0;
+
+		for (int i = 0; i < 2 * ROUNDS; i++) {
+			long before = threads.getThreadAllocatedBytes( Thread.currentThread().getId() );
+			wall.setMainTime( times[i + 1] );
+			long tickBytes = threads.getThreadAllocatedBytes( Thread.currentThread().getId() ) - before;
+
+			long start = System.nanoTime();
+			paintFrame(wall, frame);
+			long nanos = System.nanoTime() - start;
+
+			// The first half only warms up
+			if (i >= ROUNDS) {
+				paintNanos[i - ROUNDS] = nanos;
+				allocated += tickBytes;
+			}
+		}
+
+		Arrays.sort(paintNanos);
+		double paintMillis = paintNanos[ROUNDS / 2] / 1e6;
+		long bytesPerTick = allocated / ROUNDS;
+
+		System.out.printf("%-20s paint %6.2f ms, tick %8d bytes%n", name, paintMillis, bytesPerTick);
+		checkBudget(name + ".paintMillis", paintMillis);
+		checkBudget(name + ".tickBytes", bytesPerTick);
+	}
+
+	/**
+	  * Paints the top of a wall, as it would be shown in a window
+	  */
+	private static void paintFrame(ClockWall wall, BufferedImage frame) {
+		Graphics2D g2 = frame.createGraphics();
+		try {
+			g2.setClip( new Rectangle(0, 0, frame.getWidth(), frame.getHeight()) );
+			wall.paint(g2);
+		} finally {
+			g2.dispose();
+		}
+	}
+
+	/**
+	  * Fails if a measurement is over its budget. A missing budget also fails,
+	  * so a new scenario can't pass without one.
+	  */
+	private void checkBudget(String key, double measured) {
+		String budget = budgets.getProperty(key);
+		if (budget == null) {
+			fail(key + ": no budget in budgets.properties");
+			return;
+		}
+
+		if ( measured > Double.parseDouble(budget) )
+			fail(key + ": " + measured + " is over the budget of " + budget);
+	}
+
+	/**
+	  * Compares an image with its golden image, or records it when updating
+	  */
+	private void compare(String scenario, String golden, BufferedImage image) throws IOException {
+		Path file = folder.resolve(golden + ".png");
+
+		// Variants of a scenario (such as a shared face) are only compared
+		if (update && scenario.equals(golden)) {
+			try (OutputStream out = Files.newOutputStream(file)) {
+				ImageIO.write(image, "png", out);
+			}
+			System.out.printf("%-20s recorded %s%n", scenario, file);
+			return;
+		}
+
+		if ( !Files.exists(file) ) {
+			fail(scenario + ": no golden image " + file);
+			return;
+		}
+
+		BufferedImage expected = ImageIO.read( file.toFile() );
+		if (expected.getWidth() != image.getWidth() || expected.getHeight() != image.getHeight()) {
+			fail(scenario + ": size is " + image.getWidth() + "x" + image.getHeight()
+				+ ", expected " + expected.getWidth() + "x" + expected.getHeight());
+			return;
+		}
+
+		long different = 0;
+		for (int y = 0; y < image.getHeight(); y++)
+			for (int x = 0; x < image.getWidth(); x++)
+				if ( !close(expected.getRGB(x, y), image.getRGB(x, y)) )
+					different++;
+
+		double fraction = different / (double) (image.getWidth() * image.getHeight());
+		System.out.printf("%-20s %.3f%% of pixels differ%n", scenario, fraction * 100);
+
+		if (fraction > MAX_DIFFERENT)
+			fail(scenario + ": looks different from " + file);
+	}
+
+	/**
+	  * Returns true if no channel of two colors is further apart than the tolerance
+	  */
+	private static boolean close(int a, int b) {
+		for (int shift = 0; shift < 24; shift += 8) {
+			int difference = ((a >> shift) & 0xFF) - ((b >> shift) & 0xFF);
+			if (Math.abs(difference) > CHANNEL_TOLERANCE)
+				return false;
+		}
+
+		return true;
+	}
+
+	private void fail(String message) {
+		System.out.println("FAILED: " + message);
+		failures++;
+	}
+
+	/**
+	  * Runs the check, and exits with status 1 if anything failed
+	  * @param args "--update" to record new golden images, and optionally
+	  *        the folder of golden images (images/golden by default)
+	  */
+	public static void main(String[] args) throws Exception {
+		boolean update = false;
+		Path folder = Paths.get("images", "golden");
+
+		for (String arg : args) {
+			if ( arg.equals("--update") )
+				update = true;
+			else
+				folder = Paths.get(arg);
+		}
+
+		RenderCheck check = new RenderCheck(folder, update);
+
+		boolean[] passed = new boolean[1];
+		Exception[] error = new Exception[1];
+		SwingUtilities.invokeAndWait(() -> {
+			try {
+				passed[0] = check.run();
+			} catch (IOException e) {
+				error[0] = e;
+			}
+		});
+
+		if (error[0] != null)
+			throw error[0];
+
+		System.out.println(passed[0] ? "All scenarios passed" : "Some scenarios failed");
+		System.exit(passed[0] ? 0 : 1);
+	}
+}
@@ -0,0 +1,166 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import java.time.Duration;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+  * A soak test for new builds. Fills a wall with every tzdb zone
+  * (several times over), runs it in live mode for a while, then prints
+  * a summary of how the event dispatch thread and the heap held up.
+  *
+  * Record a flight recording alongside it to see the WallEvents:
+  * java -XX:StartFlightRecording=filename=soak.jfr MainWindow --stress 4 60
+  */
+public class StressMode {
+	// How often the event dispatch thread's latency is measured
+	static final long PROBE_MILLIS = 100;
+
+	private final MainWindow window;
+	private final ClockWall wall;
+	private final int replicas;
+	private final Duration duration;
+
+	private final ScheduledExecutorService prober;
+
+	// Latencies in nanoseconds, only touched on the event dispatch thread
+	private long[] latencies = new long[1024];
+	private int latencyCount;
+
+	private long startHeap, startGcMillis, startGcCount;
+
+	/**
+	  * Creates a stress run on the given window
+	  * @param window the window whose wall is filled
+	  * @param replicas how many clocks to add for each tzdb zone
+	  * @param duration how long to run in live mode
+	  */
+	public StressMode(MainWindow window, int replicas, Duration duration) {
+		this.window = window;
+		this.wall = window.getClockWall();
+		this.replicas = replicas;
+		this.duration = duration;
+
+		prober = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "Stress mode EDT probe");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	  * Fills the wall and starts the run. Must be called on the event dispatch thread.
+	  */
+	public void start() {
+		int[] zones = new int[replicas * ClockModel.ZONES.length];
+		for (int i = 0; i < zones.length; i++)
+			zones[i] = i % ClockModel.ZONES.length;
+
+		wall.addClocks(zones);
+
+		window.pack();
+		wall.setLive(true);
+
+		System.out.printf(
+			"Stress mode: %d clocks for %d min%n",
+			replicas * ClockModel.ZONES.length, duration.toMinutes()
+		);
+
+		// Measures from a full wall, so building the wall isn't counted as growth
+		startHeap = usedHeap();
+		startGcMillis = gcMillis();
+		startGcCount = gcCount();
+
+		// Posts an empty task to the event dispatch thread every so often,
+		// and records how long it waits before it runs
+		prober.scheduleAtFixedRate(() -> {
+			long posted = System.nanoTime();
+			SwingUtilities.invokeLater(() -> record(System.nanoTime() - posted));
+		}, PROBE_MILLIS, PROBE_MILLIS, TimeUnit.MILLISECONDS);
+
+		Timer end = new Timer((int) duration.toMillis(), evt -> finish());
+		end.setRepeats(false);
+		end.start();
+	}
+
+	private void record(long latency) {
+		if (latencyCount == latencies.length)
+			latencies = Arrays.copyOf(latencies, latencyCount * 2);
+
+		latencies[latencyCount++] = latency;
+	}
+
+	/**
+	  * Stops the run, prints the summary and exits
+	  */
+	private void finish() {
+		prober.shutdownNow();
+		wall.setLive(false);
+
+		// Read before usedHeap(), whose full collection would count as a pause
+		long gcMillis = gcMillis() - startGcMillis;
+		long gcCount = gcCount() - startGcCount;
+		long heapGrowth = usedHeap() - startHeap;
+
+		long[] sorted = Arrays.copyOf(latencies, latencyCount);
+		Arrays.sort(sorted);
+
+		System.out.println("Stress mode summary");
+		System.out.printf("  clocks:          %d%n", replicas * ClockModel.ZONES.length);
+		System.out.printf("  duration:        %d min%n", duration.toMinutes());
+		System.out.printf(
+			"  EDT latency:     p50 %.1f ms, p99 %.1f ms, p99.9 %.1f ms, max %.1f ms%n",
+			percentile(sorted, 0.50), percentile(sorted, 0.99),
+			percentile(sorted, 0.999), percentile(sorted, 1.0)
+		);
+		System.out.printf("  heap growth:     %d KB%n", heapGrowth / 1024);
+		System.out.printf("  GC pauses:       %d ms in %d collections%n", gcMillis, gcCount);
+		System.out.printf("  missed seconds:  %d%n", wall.getMissedSeconds());
+
+		System.exit(0);
+	}
+
+	/**
+	  * Returns a percentile of sorted nanosecond latencies, in milliseconds
+	  */
+	private static double percentile(long[] sorted, double p) {
+		if (sorted.length == 0)
+			return 0;
+
+		int index = (int) Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, index)] / 1e6;
+	}
+
+	/**
+	  * Returns the heap in use after a full collection, in bytes
+	  */
+	private static long usedHeap() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		memory.gc();
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	private static long gcMillis() {
+		long total = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			total += Math.max(0, gc.getCollectionTime());
+
+		return total;
+	}
+
+	private static long gcCount() {
+		long total = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			total += Math.max(0, gc.getCollectionCount());
+
+		return total;
+	}
+}
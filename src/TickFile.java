@@ -0,0 +1,149 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.util.Arrays;
+
+/**
+  * A memory-mapped file that lets walls in several processes on the same
+  * host show exactly the same tick. One process (the leader) computes the
+  * time and every zone's UTC offset, and writes them here. The others
+  * (followers) read them straight from the mapping and only render.
+  *
+  * Writes are guarded by a version counter, like a seqlock: it is odd while
+  * the leader is writing, so a follower that sees an odd or changed version
+  * simply reads again. Neither side ever blocks the other.
+  *
+  * Layout, in native byte order:
+  *   0  long   version
+  *   8  int    catalog hash (followers ignore files from another tzdb)
+  *   12 int    number of zones in the catalog
+  *   16 long   the tick, in seconds since 1970-01-01T00:00Z
+  *   24 int[]  the UTC offset of every catalog zone, in seconds
+  */
+public class TickFile implements Closeable {
+	static final int VERSION = 0;
+	static final int CATALOG_HASH = 8;
+	static final int ZONE_COUNT = 12;
+	static final int EPOCH_SECOND = 16;
+	static final int OFFSETS = 24;
+
+	// Gives ordered (acquire/release) access to the version counter
+	private static final VarHandle version = MethodHandles.byteBufferViewVarHandle(
+		long[].class, ByteOrder.nativeOrder()
+	);
+
+	static final int catalogHash = Arrays.hashCode(ClockModel.ZONES);
+
+	// How many times read() tries before giving up on this tick. A write
+	// takes microseconds, so this is only reached if the leader died mid-write.
+	static final int MAX_READ_TRIES = 1000;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+
+	// The leader's model, which holds one slot for every catalog zone
+	private ClockModel zones;
+
+	/**
+	  * Opens (creating if needed) a tick file
+	  * @param path the file to map, shared by every process on the host
+	  * @throws IOException if the file cannot be opened or mapped
+	  */
+	public TickFile(Path path) throws IOException {
+		channel = FileChannel.open(
+			path,
+			StandardOpenOption.CREATE,
+			StandardOpenOption.READ,
+			StandardOpenOption.WRITE
+		);
+
+		long size = OFFSETS + 4L * ClockModel.ZONES.length;
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		buffer.order( ByteOrder.nativeOrder() );
+	}
+
+	/**
+	  * Writes a tick. Only the leader may call this.
+	  * @param epochSecond the tick, in seconds since 1970-01-01T00:00Z
+	  */
+	public void write(long epochSecond) {
+		if (zones == null) {
+			zones = new ClockModel();
+			for (int zone = 0; zone < ClockModel.ZONES.length; zone++)
+				zones.add(zone);
+		}
+
+		// Offsets are only looked up again when a zone changes them
+		zones.update(epochSecond);
+
+		// Rounded up to even, in case a leader before this one died mid-write
+		long v = ((long) version.getOpaque(buffer, VERSION) + 1) & ~1L;
+		version.setOpaque(buffer, VERSION, v + 1);
+		VarHandle.storeStoreFence();
+
+		buffer.putInt(CATALOG_HASH, catalogHash);
+		buffer.putInt(ZONE_COUNT, ClockModel.ZONES.length);
+		buffer.putLong(EPOCH_SECOND, epochSecond);
+		for (int zone = 0; zone < ClockModel.ZONES.length; zone++)
+			buffer.putInt(OFFSETS + 4 * zone, zones.offset(zone));
+
+		version.setRelease(buffer, VERSION, v + 2);
+	}
+
+	/**
+	  * Returns the version of the last complete tick, without reading it.
+	  * Followers poll this to find out when a new tick has been written.
+	  * @return the version, which is odd while a tick is being written
+	  */
+	public long version() {
+		return (long) version.getAcquire(buffer, VERSION);
+	}
+
+	/**
+	  * Reads the latest tick into a model, retrying if the leader was
+	  * writing at the same time.
+	  * @param model the model to update
+	  * @return the tick, in seconds since 1970-01-01T00:00Z,
+	  *         or Long.MIN_VALUE if no leader has written a usable tick yet,
+	  *         or no complete tick could be read after MAX_READ_TRIES
+	  */
+	public long read(ClockModel model) {
+		for (int tries = 0; tries < MAX_READ_TRIES; tries++) {
+			long before = (long) version.getAcquire(buffer, VERSION);
+			if ( (before & 1) != 0 ) {
+				Thread.onSpinWait();
+				continue;
+			}
+
+			if (before == 0
+				|| buffer.getInt(CATALOG_HASH) != catalogHash
+				|| buffer.getInt(ZONE_COUNT) != ClockModel.ZONES.length)
+				return Long.MIN_VALUE;
+
+			long epochSecond = buffer.getLong(EPOCH_SECOND);
+			model.setTime(epochSecond);
+			for (int i = 0; i < model.size(); i++)
+				model.setOffset(i, buffer.getInt(OFFSETS + 4 * model.zone(i)));
+
+			VarHandle.loadLoadFence();
+			if ( (long) version.getOpaque(buffer, VERSION) == before )
+				return epochSecond;
+		}
+
+		return Long.MIN_VALUE;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
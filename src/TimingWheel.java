@@ -0,0 +1,180 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+  * Schedules any number of alarms on a hierarchical timing wheel,
+  * driven by the wall's tick.
+  *
+  * The wheel has 4 levels of 64 slots. Level 0 holds alarms due within
+  * 64 seconds (one slot per second), level 1 those due within 64^2 seconds
+  * (one slot per 64 seconds), and so on up to about 194 days. Each tick
+  * only looks at one slot of level 0; every 64 ticks, one slot of the
+  * level above is spread back down. So a tick costs the same no matter
+  * how many alarms exist.
+  */
+public class TimingWheel {
+	static final int BITS = 6;
+	static final int SLOTS = 1 << BITS;
+	static final int MASK = SLOTS - 1;
+	static final int LEVELS = 4;
+
+	// Ticks further apart than this (or backwards) schedule every alarm
+	// again, instead of stepping through each second
+	static final long MAX_STEPS = 24 * 60 * 60;
+
+	// The first alarm of each slot. Each alarm links to the next one.
+	private final Alarm[][] slots = new Alarm[LEVELS][SLOTS];
+
+	// Alarms due further ahead than the top level can hold
+	private Alarm overflow;
+
+	// Every alarm, for when the wheel has to be filled again
+	private final List<Alarm> alarms = new ArrayList<>();
+
+	private long now;
+	private boolean started;
+
+	/**
+	  * Adds an alarm to the wheel, unless it was already removed
+	  * @param alarm the alarm to add
+	  */
+	public void add(Alarm alarm) {
+		if (alarm.cancelled)
+			return;
+
+		alarms.add(alarm);
+
+		if (started) {
+			alarm.scheduleAfter(now);
+			insert(alarm);
+		}
+	}
+
+	/**
+	  * Removes an alarm. It is dropped from the wheel when its slot comes up.
+	  * @param alarm the alarm to remove
+	  */
+	public void remove(Alarm alarm) {
+		alarm.cancelled = true;
+		alarms.remove(alarm);
+	}
+
+	/**
+	  * Returns the number of alarms on the wheel
+	  */
+	public int size() {
+		return alarms.size();
+	}
+
+	/**
+	  * Moves the wheel to the given tick, calling fired for every alarm that
+	  * goes off on the way. If the time jumps backwards, or further than a
+	  * day, the alarms in between are skipped instead.
+	  * @param epochSecond the tick, in seconds since 1970-01-01T00:00Z
+	  * @param fired called for each alarm that goes off
+	  */
+	public void advanceTo(long epochSecond, Consumer<Alarm> fired) {
+		if (!started || epochSecond < now || epochSecond - now > MAX_STEPS) {
+			reset(epochSecond);
+			return;
+		}
+
+		while (now < epochSecond)
+			step(fired);
+	}
+
+	/**
+	  * Empties the wheel and schedules every alarm after the given tick
+	  */
+	private void reset(long epochSecond) {
+		for (Alarm[] level : slots)
+			Arrays.fill(level, null);
+		overflow = null;
+
+		now = epochSecond;
+		started = true;
+
+		for (Alarm alarm : alarms) {
+			alarm.scheduleAfter(now);
+			insert(alarm);
+		}
+	}
+
+	/**
+	  * Moves the wheel forward one second
+	  */
+	private void step(Consumer<Alarm> fired) {
+		now++;
+
+		// When a level wraps around, spread the next slot of the level above
+		// back down into the lower levels
+		int level = 1;
+		while (level < LEVELS && ((now >>> (BITS * (level - 1))) & MASK) == 0) {
+			cascade(level);
+			level++;
+		}
+
+		if (level == LEVELS && ((now >>> (BITS * (LEVELS - 1))) & MASK) == 0) {
+			Alarm list = overflow;
+			overflow = null;
+			reinsert(list);
+		}
+
+		// Everything left in the current slot of level 0 is due now
+		int index = (int) (now & MASK);
+		Alarm alarm = slots[0][index];
+		slots[0][index] = null;
+
+		while (alarm != null) {
+			Alarm following = alarm.nextInSlot;
+
+			if (!alarm.cancelled) {
+				fired.accept(alarm);
+				alarm.scheduleNextDay();
+				insert(alarm);
+			}
+
+			alarm = following;
+		}
+	}
+
+	private void cascade(int level) {
+		int index = (int) ((now >>> (BITS * level)) & MASK);
+		Alarm list = slots[level][index];
+		slots[level][index] = null;
+		reinsert(list);
+	}
+
+	private void reinsert(Alarm alarm) {
+		while (alarm != null) {
+			Alarm following = alarm.nextInSlot;
+
+			if (!alarm.cancelled)
+				insert(alarm);
+
+			alarm = following;
+		}
+	}
+
+	/**
+	  * Puts an alarm in the slot for its next time, picking the level
+	  * by how far away that is
+	  */
+	private void insert(Alarm alarm) {
+		long delta = alarm.next - now;
+
+		for (int level = 0; level < LEVELS; level++) {
+			if (delta < 1L << (BITS * (level + 1))) {
+				int index = (int) ((alarm.next >>> (BITS * level)) & MASK);
+				alarm.nextInSlot = slots[level][index];
+				slots[level][index] = alarm;
+				return;
+			}
+		}
+
+		alarm.nextInSlot = overflow;
+		overflow = alarm;
+	}
+}
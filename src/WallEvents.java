@@ -0,0 +1,56 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+  * Custom JDK Flight Recorder events for the clock wall.
+  * They cost almost nothing unless a recording is running, for example:
+  * java -XX:StartFlightRecording=filename=wall.jfr MainWindow
+  */
+public class WallEvents {
+	private WallEvents() {}
+
+	@Name("clockwall.Tick")
+	@Label("Tick")
+	@Category("Clock Wall")
+	@Description("All clocks on the wall were updated to a new time")
+	static class Tick extends Event {
+		@Label("Clocks")
+		int clocks;
+
+		@Label("Epoch Second")
+		long epochSecond;
+	}
+
+	@Name("clockwall.Paint")
+	@Label("Paint")
+	@Category("Clock Wall")
+	@Description("One clock was painted")
+	static class Paint extends Event {
+		@Label("Size")
+		int size;
+
+		@Label("Detail")
+		int detail;
+	}
+
+	@Name("clockwall.LabelUpdate")
+	@Label("Label Update")
+	@Category("Clock Wall")
+	@Description("The text of a clock's labels was changed")
+	static class LabelUpdate extends Event {
+		@Label("Zone Name Changed")
+		boolean zoneName;
+	}
+
+	@Name("clockwall.Layout")
+	@Label("Layout")
+	@Category("Clock Wall")
+	@Description("The wall laid out its clocks")
+	static class Layout extends Event {
+		@Label("Clocks")
+		int clocks;
+	}
+}
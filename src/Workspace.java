@@ -0,0 +1,31 @@
+import java.awt.image.BufferedImage;
+
+/**
+  * A named wall, such as "Trading desks" or "Support regions".
+  * While a workspace isn't shown, it is nothing more than its list of
+  * zones and the last frame it showed: no components, no ticks and no
+  * painting. The last frame is shown right away when switching back,
+  * while the clocks are being rebuilt.
+  */
+public class Workspace {
+	public final String name;
+
+	// The zones of the wall, as catalog indexes (see ClockWall.getZones())
+	int[] zones = new int[0];
+
+	// What the wall looked like when it was last shown, or null
+	BufferedImage lastFrame;
+
+	/**
+	  * Creates an empty workspace
+	  * @param name the name shown to the user
+	  */
+	public Workspace(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
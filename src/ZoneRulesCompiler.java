@@ -0,0 +1,293 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneOffsetTransitionRule;
+import java.time.zone.ZoneRules;
+import java.time.zone.ZoneRulesProvider;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+  * Writes the tzdb rules of the running JDK into a compact file that
+  * MappedZoneRulesProvider can map. To use a newer tzdb on an older JDK,
+  * run this on a JDK (or a JDK updated with tzupdater) that has it:
+  * java ZoneRulesCompiler tzdb.cwtz
+  *
+  * Layout, big-endian:
+  *   int     magic ("CWTZ") and int format version
+  *   string  tzdb version
+  *   int     number of zones, then the position of each zone's rules
+  *           in the file (sorted by ID)
+  *   int     length of the IDs, then the UTF-8 IDs, each ending in '\n'
+  *   then the rules. Zones with the same rules (such as links like
+  *   "US/Eastern" and "America/New_York") share one copy.
+  *
+  * The rules of a zone are its standard offset transitions, its wall
+  * offset transitions, and the rules for every year after the last one:
+  *   short   number of standard offset transitions, and each one's epoch second
+  *   offset  the standard offset before the first one, and after each one
+  *   short   number of wall offset transitions, and each one's epoch second
+  *   offset  the wall offset before the first one, and after each one
+  *   byte    number of yearly rules, then for each rule:
+  *           byte month, byte day of month indicator, byte day of week (0 if none),
+  *           int second of day (86400 for the end of the day),
+  *           byte time definition, offset standard, offset before, offset after
+  *
+  * Transitions and offsets are almost always whole quarter hours, so an
+  * epoch second takes 3 bytes and an offset takes 1 (see writeEpochSecond()
+  * and writeOffset()). A string is a 2 byte length followed by UTF-8 bytes.
+  */
+public class ZoneRulesCompiler {
+	// Standard offsets are sampled this often when looking for their changes
+	static final long SAMPLE_SECONDS = 30L * 24 * 60 * 60;
+
+	// The range sampled: from 1700 to at least 2100
+	static final long SAMPLE_FROM = -8520336000L;
+	static final long SAMPLE_TO = 4102444800L;
+
+	private ZoneRulesCompiler() {}
+
+	/**
+	  * Writes the rules file
+	  * @param args the file to write
+	  * @throws IOException if the file cannot be written
+	  */
+	public static void main(String[] args) throws IOException {
+		Path path = Paths.get(args.length > 0 ? args[0] : "tzdb.cwtz");
+
+		List<String> ids = new ArrayList<>( ZoneRulesProvider.getAvailableZoneIds() );
+		ids.sort(null);
+
+		String version = ZoneRulesProvider.getVersions("UTC").lastKey();
+
+		StringBuilder names = new StringBuilder();
+		for (String id : ids)
+			names.append(id).append('\n');
+		byte[] nameBytes = names.toString().getBytes(StandardCharsets.UTF_8);
+
+		// Works out where the rules start, after the header and the index
+		int start = 4 + 4 + size(version) + 4 + 4 * ids.size() + 4 + nameBytes.length;
+
+		// Encodes every zone, keeping one copy of rules that are the same
+		ByteArrayOutputStream rules = new ByteArrayOutputStream();
+		Map<ByteBuffer, Integer> written = new HashMap<>();
+		int[] positions = new int[ ids.size() ];
+
+		for (int i = 0; i < ids.size(); i++) {
+			ZoneRules zoneRules = ZoneRulesProvider.getRules(ids.get(i), false);
+			byte[] bytes = encode(zoneRules);
+
+			// Standard offset changes are found by searching, so make sure
+			// the rules read back exactly
+			if ( !MappedZoneRulesProvider.readRules(ByteBuffer.wrap(bytes)).equals(zoneRules) )
+				throw new IllegalStateException("Unable to encode the rules of " + ids.get(i));
+
+			Integer position = written.get( ByteBuffer.wrap(bytes) );
+			if (position == null) {
+				position = start + rules.size();
+				written.put(ByteBuffer.wrap(bytes), position);
+				rules.write(bytes);
+			}
+
+			positions[i] = position;
+		}
+
+		try (OutputStream file = Files.newOutputStream(path);
+			DataOutputStream out = new DataOutputStream(file)) {
+			out.writeInt(MappedZoneRulesProvider.MAGIC);
+			out.writeInt(MappedZoneRulesProvider.FORMAT);
+			writeString(out, version);
+
+			out.writeInt( ids.size() );
+			for (int position : positions)
+				out.writeInt(position);
+
+			out.writeInt(nameBytes.length);
+			out.write(nameBytes);
+
+			rules.writeTo(out);
+		}
+
+		System.out.printf(
+			"Wrote %d zones (%d distinct rules, tzdb %s) to %s, %d KB%n",
+			ids.size(), written.size(), version, path, Files.size(path) / 1024
+		);
+	}
+
+	/**
+	  * Encodes the rules of one zone
+	  */
+	private static byte[] encode(ZoneRules rules) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		// The base offsets are the ones in effect before any transition
+		List<ZoneOffsetTransition> standard = standardTransitions(rules);
+		writeTransitions( out, standard, rules.getStandardOffset(Instant.MIN) );
+
+		List<ZoneOffsetTransition> transitions = rules.getTransitions();
+		ZoneOffset baseWall = transitions.isEmpty()
+			? rules.getOffset(Instant.EPOCH)
+			: transitions.get(0).getOffsetBefore();
+		writeTransitions(out, transitions, baseWall);
+
+		List<ZoneOffsetTransitionRule> lastRules = rules.getTransitionRules();
+		out.writeByte( lastRules.size() );
+		for (ZoneOffsetTransitionRule rule : lastRules) {
+			DayOfWeek day = rule.getDayOfWeek();
+
+			out.writeByte( rule.getMonth().getValue() );
+			out.writeByte( rule.getDayOfMonthIndicator() );
+			out.writeByte( day == null ? MappedZoneRulesProvider.NO_DAY_OF_WEEK : day.getValue() );
+			out.writeInt( rule.isMidnightEndOfDay() ? 86400 : rule.getLocalTime().toSecondOfDay() );
+			out.writeByte( rule.getTimeDefinition().ordinal() );
+			writeOffset( out, rule.getStandardOffset() );
+			writeOffset( out, rule.getOffsetBefore() );
+			writeOffset( out, rule.getOffsetAfter() );
+		}
+
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	  * Returns the changes of a zone's standard offset. ZoneRules doesn't
+	  * list them, so the standard offset is sampled at every wall transition
+	  * and every SAMPLE_SECONDS, and each change is found by binary search.
+	  */
+	private static List<ZoneOffsetTransition> standardTransitions(ZoneRules rules) {
+		List<ZoneOffsetTransition> found = new ArrayList<>();
+		List<ZoneOffsetTransition> transitions = rules.getTransitions();
+
+		long end = SAMPLE_TO;
+		if ( !transitions.isEmpty() )
+			end = Math.max(end, transitions.get(transitions.size() - 1).toEpochSecond());
+
+		long previous = Instant.MIN.getEpochSecond();
+		int next = 0;
+
+		for (long sample = SAMPLE_FROM; sample <= end; sample += SAMPLE_SECONDS) {
+			// Also samples just before and at each wall transition on the way
+			while (next < transitions.size() && transitions.get(next).toEpochSecond() <= sample) {
+				long at = transitions.get(next++).toEpochSecond();
+				previous = findChanges(rules, previous, at - 1, found);
+				previous = findChanges(rules, previous, at, found);
+			}
+
+			previous = findChanges(rules, previous, sample, found);
+		}
+
+		return found;
+	}
+
+	/**
+	  * Adds every change of the standard offset after one instant, up to and
+	  * including another, assuming it changes at most once between samples
+	  * @return the later instant, to continue from
+	  */
+	private static long findChanges(ZoneRules rules, long from, long to, List<ZoneOffsetTransition> found) {
+		if (to <= from)
+			return from;
+
+		ZoneOffset before = standardOffset(rules, from);
+		ZoneOffset after = standardOffset(rules, to);
+		if ( before.equals(after) )
+			return to;
+
+		// Finds the first second with a different standard offset
+		long low = from, high = to;
+		while (high - low > 1) {
+			long middle = low + (high - low) / 2;
+			if ( standardOffset(rules, middle).equals(before) )
+				low = middle;
+			else
+				high = middle;
+		}
+
+		ZoneOffset changed = standardOffset(rules, high);
+		found.add( ZoneOffsetTransition.of(
+			LocalDateTime.ofEpochSecond(high, 0, before), before, changed
+		) );
+
+		return findChanges(rules, high, to, found);
+	}
+
+	private static ZoneOffset standardOffset(ZoneRules rules, long epochSecond) {
+		return rules.getStandardOffset( Instant.ofEpochSecond(epochSecond) );
+	}
+
+	/**
+	  * Writes a list of transitions: a 2 byte count, each transition's epoch
+	  * second, then the offset before the first one and after each one
+	  */
+	private static void writeTransitions(DataOutputStream out, List<ZoneOffsetTransition> transitions,
+			ZoneOffset base) throws IOException {
+		out.writeShort( transitions.size() );
+		for (ZoneOffsetTransition transition : transitions)
+			writeEpochSecond( out, transition.toEpochSecond() );
+
+		writeOffset(out, base);
+		for (ZoneOffsetTransition transition : transitions)
+			writeOffset( out, transition.getOffsetAfter() );
+	}
+
+	/**
+	  * Writes an epoch second as 3 bytes of quarter hours since EPOCH_BASE
+	  * if it can be, or as FULL_EPOCH followed by 8 bytes
+	  */
+	private static void writeEpochSecond(DataOutputStream out, long epochSecond) throws IOException {
+		if (epochSecond >= MappedZoneRulesProvider.EPOCH_BASE
+			&& epochSecond < MappedZoneRulesProvider.EPOCH_LIMIT
+			&& epochSecond % 900 == 0) {
+			int quarters = (int) ((epochSecond - MappedZoneRulesProvider.EPOCH_BASE) / 900);
+			out.writeByte(quarters >>> 16);
+			out.writeByte(quarters >>> 8);
+			out.writeByte(quarters);
+		}
+		else {
+			out.writeByte(MappedZoneRulesProvider.FULL_EPOCH);
+			out.writeLong(epochSecond);
+		}
+	}
+
+	/**
+	  * Writes an offset as 1 byte of quarter hours if it can be,
+	  * or as FULL_OFFSET followed by 4 bytes
+	  */
+	private static void writeOffset(DataOutputStream out, ZoneOffset offset) throws IOException {
+		int seconds = offset.getTotalSeconds();
+		if (seconds % 900 == 0) {
+			out.writeByte(seconds / 900);
+		}
+		else {
+			out.writeByte(MappedZoneRulesProvider.FULL_OFFSET);
+			out.writeInt(seconds);
+		}
+	}
+
+	private static int size(String s) {
+		return 2 + s.getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+}